@@ -0,0 +1,90 @@
+package org.moneytransfer.cluster;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Static description of a partitioned deployment.
+ * Node `i` of `N` owns every account whose id satisfies `floorMod(id, N) == i`.
+ * <p>
+ * Nodes authenticate calls to each other with a secret shared by all nodes of the cluster,
+ * which is passed in the {@link #SECRET_HEADER} header.
+ */
+public final class Cluster {
+    public static final String SECRET_HEADER = "X-Cluster-Secret";
+
+    private final List<URI> nodes;
+    private final int self;
+    private final byte[] secret;
+
+    /**
+     * @param secret shared by all nodes, must not be empty if there is more than one node
+     */
+    public Cluster(List<URI> nodes, int self, String secret) {
+        if (nodes.isEmpty()) {
+            throw new IllegalArgumentException("Cluster must contain at least one node");
+        }
+        if (self < 0 || self >= nodes.size()) {
+            throw new IllegalArgumentException(
+                    String.format("Node index %d is out of range [0, %d)", self, nodes.size())
+            );
+        }
+        if (nodes.size() > 1 && secret.isEmpty()) {
+            throw new IllegalArgumentException("Cluster of several nodes must have a secret");
+        }
+        this.nodes = List.copyOf(nodes);
+        this.self = self;
+        this.secret = secret.getBytes(StandardCharsets.UTF_8);
+    }
+
+    public static Cluster single(int port) {
+        return new Cluster(List.of(URI.create("http://localhost:" + port)), 0, "");
+    }
+
+    /**
+     * Parses comma-separated list of node base URIs, e.g. `http://host-a:8080,http://host-b:8080`.
+     */
+    public static Cluster parse(String nodes, int self, String secret) {
+        var uris = new ArrayList<URI>();
+        for (String node : nodes.split(",")) {
+            uris.add(URI.create(node.trim()));
+        }
+        return new Cluster(uris, self, secret);
+    }
+
+    public int size() {
+        return nodes.size();
+    }
+
+    public int self() {
+        return self;
+    }
+
+    public URI uri(int node) {
+        return nodes.get(node);
+    }
+
+    public int ownerOf(long accountId) {
+        return (int) Math.floorMod(accountId, (long) nodes.size());
+    }
+
+    public boolean isLocal(long accountId) {
+        return ownerOf(accountId) == self;
+    }
+
+    public String secret() {
+        return new String(secret, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param candidate value of the {@link #SECRET_HEADER} header, may be `null`
+     */
+    public boolean isSecret(String candidate) {
+        // compared in constant time, so that the secret can not be guessed byte by byte
+        return candidate != null && secret.length > 0
+                && MessageDigest.isEqual(secret, candidate.getBytes(StandardCharsets.UTF_8));
+    }
+}
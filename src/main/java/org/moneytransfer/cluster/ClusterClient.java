@@ -0,0 +1,151 @@
+package org.moneytransfer.cluster;
+
+import io.javalin.plugin.json.JavalinJson;
+import org.moneytransfer.service.MoneyServiceError;
+import org.moneytransfer.service.MoneyServiceException;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.ConnectException;
+import java.net.http.HttpClient;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * HTTP client used by a node to talk to the other nodes of the cluster.
+ */
+public final class ClusterClient implements ParticipantClient, CoordinatorClient {
+    private static final Duration DEFAULT_CALL_TIMEOUT = Duration.ofSeconds(5);
+
+    private final Cluster cluster;
+    private final Duration callTimeout;
+    private final Duration forwardTimeout;
+    private final HttpClient httpClient;
+
+    public ClusterClient(Cluster cluster) {
+        this(cluster, DEFAULT_CALL_TIMEOUT);
+    }
+
+    /**
+     * @param callTimeout timeout of a single call of the two-phase transfer protocol
+     */
+    public ClusterClient(Cluster cluster, Duration callTimeout) {
+        this.cluster = cluster;
+        this.callTimeout = callTimeout;
+        // a forwarded transfer may take a `prepare` and a `commit` on the owner, each bounded by the connect timeout
+        // plus the request timeout, and the forwarding node must not give up while the owner can still apply it
+        this.forwardTimeout = callTimeout.multipliedBy(5);
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(callTimeout)
+                .build();
+    }
+
+    /**
+     * Sends the request to the node as is and returns the response as is.
+     * If the request might have reached the node but no response came back, a request which changes state
+     * fails with {@link MoneyServiceError#OUTCOME_UNKNOWN}, since it may or may not have been applied.
+     */
+    public HttpResponse<String> forward(int node, String method, String path, Map<String, String> headers,
+                                        String body) throws MoneyServiceException {
+        try {
+            return send(node, method, path, headers, body, forwardTimeout);
+        } catch (ConnectException | HttpConnectTimeoutException e) {
+            throw nodeUnavailableException(node, e);
+        } catch (IOException e) {
+            if (method.equals("GET")) {
+                throw nodeUnavailableException(node, e);
+            }
+            throw new MoneyServiceException(
+                    MoneyServiceError.OUTCOME_UNKNOWN,
+                    String.format("No response from node %d, the request may or may not be applied: %s",
+                            node, e.getMessage())
+            );
+        }
+    }
+
+    @Override
+    public void prepare(int node, String transferId, long accountId, BigDecimal amount)
+            throws MoneyServiceException, IOException {
+        var body = JavalinJson.toJson(Map.of("amount", amount));
+        var path = String.format(
+                "/internal/transfers/%s/prepare/%d?coordinator=%d", transferId, accountId, cluster.self()
+        );
+        call(node, path, body);
+    }
+
+    @Override
+    public void commit(int node, String transferId) throws MoneyServiceException, IOException {
+        call(node, String.format("/internal/transfers/%s/commit", transferId), "");
+    }
+
+    @Override
+    public void abort(int node, String transferId) throws MoneyServiceException, IOException {
+        call(node, String.format("/internal/transfers/%s/abort?coordinator=%d", transferId, cluster.self()), "");
+    }
+
+    @Override
+    public Map<String, TransferDecision> decisions(int node, Collection<String> transferIds)
+            throws MoneyServiceException, IOException {
+        var response = call(node, "/internal/transfers/decisions", JavalinJson.toJson(transferIds));
+        Map<?, ?> decisions;
+        try {
+            decisions = JavalinJson.fromJson(response, Map.class);
+        } catch (RuntimeException e) {
+            throw new IOException(String.format("Node %d responded with malformed decisions", node), e);
+        }
+        var result = new HashMap<String, TransferDecision>();
+        decisions.forEach((id, decision) -> result.put((String) id, TransferDecision.valueOf((String) decision)));
+        return result;
+    }
+
+    private String call(int node, String path, String body) throws MoneyServiceException, IOException {
+        var response = send(node, "POST", path, Map.of(Cluster.SECRET_HEADER, cluster.secret()), body, callTimeout);
+        if (response.statusCode() / 100 == 2) {
+            return response.body();
+        }
+        ErrorBody error;
+        try {
+            error = JavalinJson.fromJson(response.body(), ErrorBody.class);
+        } catch (RuntimeException e) {
+            error = null;
+        }
+        if (error == null || error.error == null) {
+            throw new IOException(String.format("Node %d responded with status %d", node, response.statusCode()));
+        }
+        throw new MoneyServiceException(error.error, error.description);
+    }
+
+    private HttpResponse<String> send(int node, String method, String path, Map<String, String> headers,
+                                      String body, Duration timeout) throws IOException {
+        var request = HttpRequest.newBuilder(cluster.uri(node).resolve(path))
+                .timeout(timeout)
+                .method(method, body.isEmpty()
+                        ? HttpRequest.BodyPublishers.noBody()
+                        : HttpRequest.BodyPublishers.ofString(body));
+        headers.forEach(request::header);
+        try {
+            return httpClient.send(request.build(), HttpResponse.BodyHandlers.ofString());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for node " + node, e);
+        }
+    }
+
+    private static MoneyServiceException nodeUnavailableException(int node, IOException cause) {
+        return new MoneyServiceException(
+                MoneyServiceError.NODE_UNAVAILABLE,
+                String.format("Node %d is unavailable: %s", node, cause.getMessage())
+        );
+    }
+
+    // Mirrors the error part of `MoneyOperationResponse`, which lives in the `rest` package
+    private static final class ErrorBody {
+        public MoneyServiceError error;
+        public String description;
+    }
+}
@@ -0,0 +1,20 @@
+package org.moneytransfer.cluster;
+
+import org.moneytransfer.service.MoneyServiceException;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Remote side of the two-phase transfer protocol, as seen by a participant which did not hear
+ * the decision of the coordinator for too long.
+ */
+public interface CoordinatorClient {
+
+    /**
+     * @return decision of the coordinator for every one of `transferIds`
+     */
+    Map<String, TransferDecision> decisions(int node, Collection<String> transferIds)
+            throws MoneyServiceException, IOException;
+}
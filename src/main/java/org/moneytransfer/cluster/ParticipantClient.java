@@ -0,0 +1,20 @@
+package org.moneytransfer.cluster;
+
+import org.moneytransfer.service.MoneyServiceException;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+
+/**
+ * Remote side of the two-phase transfer protocol.
+ * {@link IOException} means that the outcome on the remote node is unknown, i.e. the transfer is in doubt.
+ */
+public interface ParticipantClient {
+
+    void prepare(int node, String transferId, long accountId, BigDecimal amount)
+            throws MoneyServiceException, IOException;
+
+    void commit(int node, String transferId) throws MoneyServiceException, IOException;
+
+    void abort(int node, String transferId) throws MoneyServiceException, IOException;
+}
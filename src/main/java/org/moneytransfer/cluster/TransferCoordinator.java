@@ -0,0 +1,215 @@
+package org.moneytransfer.cluster;
+
+import org.moneytransfer.service.MoneyService;
+import org.moneytransfer.service.MoneyServiceError;
+import org.moneytransfer.service.MoneyServiceException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs transfers whose source account is owned by this node and whose destination account is owned by another one.
+ * <p>
+ * The protocol is two-phase:
+ * <ol>
+ *     <li>the amount is reserved, i.e. withdrawn from the local source account;</li>
+ *     <li>the owner of the destination account is asked to prepare the credit;</li>
+ *     <li>if it agrees, the transfer is committed there, otherwise the reservation is returned.</li>
+ * </ol>
+ * When the remote node cannot be reached after the decision is made, the transfer is kept as in-doubt
+ * and the decision is re-sent by a background recovery task until the remote node acknowledges it.
+ * The reservation is confirmed only when the remote node acknowledges the commit. If it rejects the commit,
+ * because it lost the prepared credit, the reservation is returned instead.
+ * <p>
+ * A participant which did not hear the decision for too long asks for it via {@link #decisionOf}.
+ * Transfers the coordinator knows nothing about, e.g. because it was restarted, are presumed aborted.
+ */
+public final class TransferCoordinator {
+    private static final Logger LOG = LoggerFactory.getLogger(TransferCoordinator.class);
+
+    private final MoneyService moneyService;
+    private final Cluster cluster;
+    private final ParticipantClient participantClient;
+    // from before `prepare` is sent until the first attempt to deliver the decision
+    private final ConcurrentMap<String, PendingTransfer> inProgress = new ConcurrentHashMap<>();
+    // decided, but not yet acknowledged by the remote node; a transfer is added here before it is removed
+    // from `inProgress`, so that it is never unknown while the decision may still be delivered
+    private final ConcurrentMap<String, PendingTransfer> inDoubt = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService recoveryExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        var thread = new Thread(r, "transfer-recovery");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public TransferCoordinator(MoneyService moneyService, Cluster cluster, ParticipantClient participantClient) {
+        this.moneyService = moneyService;
+        this.cluster = cluster;
+        this.participantClient = participantClient;
+    }
+
+    public void start(long recoveryIntervalMillis) {
+        recoveryExecutor.scheduleWithFixedDelay(
+                this::recover, recoveryIntervalMillis, recoveryIntervalMillis, TimeUnit.MILLISECONDS
+        );
+    }
+
+    public void stop() {
+        recoveryExecutor.shutdownNow();
+    }
+
+    public void transfer(long idFrom, long idTo, BigDecimal amount) throws MoneyServiceException {
+        var node = cluster.ownerOf(idTo);
+        var transfer = new PendingTransfer(UUID.randomUUID().toString(), node, idFrom, idTo, amount);
+
+        // phase 1: reserve locally, then prepare remotely
+        moneyService.reserveWithdrawal(idFrom, amount);
+        inProgress.put(transfer.id, transfer);
+        try {
+            try {
+                participantClient.prepare(node, transfer.id, idTo, amount);
+            } catch (MoneyServiceException e) {
+                refund(transfer);
+                throw e;
+            } catch (IOException e) {
+                // the remote node may or may not have prepared the credit, so it must be told to forget it
+                transfer.decision = TransferDecision.ABORT;
+                refund(transfer);
+                sendDecision(transfer);
+                throw nodeUnavailableException(node, e);
+            }
+
+            // phase 2: the decision is made, the money will reach the destination unless the remote node lost it
+            transfer.decision = TransferDecision.COMMIT;
+            sendDecision(transfer);
+        } finally {
+            inProgress.remove(transfer.id);
+        }
+    }
+
+    /**
+     * @return number of transfers which are decided, but not yet acknowledged by the remote node
+     */
+    public int inDoubtCount() {
+        return inDoubt.size();
+    }
+
+    /**
+     * Tells a participant what to do with a transfer it prepared.
+     */
+    public TransferDecision decisionOf(String transferId) {
+        // `inProgress` is checked first, since transfers move from it to `inDoubt`, but never back
+        var transfer = inProgress.get(transferId);
+        if (transfer == null) {
+            transfer = inDoubt.get(transferId);
+        }
+        if (transfer == null) {
+            return TransferDecision.UNKNOWN;
+        }
+        var decision = transfer.decision;
+        return decision == null ? TransferDecision.UNDECIDED : decision;
+    }
+
+    // Visible for tests
+    void recover() {
+        for (PendingTransfer transfer : inDoubt.values()) {
+            try {
+                sendDecision(transfer);
+            } catch (MoneyServiceException e) {
+                // the reservation is already returned, and there is no client to report the failure to
+            }
+        }
+    }
+
+    // Called either by the thread running the transfer, or later by the single recovery thread
+    private void sendDecision(PendingTransfer transfer) throws MoneyServiceException {
+        try {
+            if (transfer.decision == TransferDecision.COMMIT) {
+                participantClient.commit(transfer.node, transfer.id);
+            } else {
+                participantClient.abort(transfer.node, transfer.id);
+            }
+        } catch (IOException e) {
+            if (inDoubt.putIfAbsent(transfer.id, transfer) == null) {
+                LOG.warn("Transfer {} is in doubt, {} will be retried: {}", transfer.id, transfer.decision, e.getMessage());
+            }
+            return;
+        } catch (MoneyServiceException e) {
+            // the participant lost the prepared credit, e.g. it was restarted, so retrying will not help
+            inDoubt.remove(transfer.id);
+            if (transfer.decision == TransferDecision.COMMIT) {
+                refund(transfer);
+                LOG.warn("Node {} rejected COMMIT of transfer {}, {} is returned to account {}: {}",
+                        transfer.node, transfer.id, transfer.amount, transfer.accountFrom, e.getMessage());
+                throw transferRolledBackException(transfer, e);
+            }
+            LOG.error("Node {} rejected ABORT of transfer {} of {} from account {} to account {}, "
+                            + "it has to be reconciled manually: {}",
+                    transfer.node, transfer.id, transfer.amount, transfer.accountFrom, transfer.accountTo,
+                    e.getMessage());
+            return;
+        }
+        inDoubt.remove(transfer.id);
+        if (transfer.decision == TransferDecision.COMMIT) {
+            confirm(transfer);
+        }
+    }
+
+    private void confirm(PendingTransfer transfer) {
+        try {
+            moneyService.confirmWithdrawal(transfer.accountFrom);
+        } catch (MoneyServiceException e) {
+            // the reservation keeps the account from being archived, so it must still be there
+            throw new IllegalStateException("Could not confirm transfer " + transfer.id, e);
+        }
+    }
+
+    private void refund(PendingTransfer transfer) {
+        try {
+            moneyService.cancelWithdrawal(transfer.accountFrom, transfer.amount);
+        } catch (MoneyServiceException e) {
+            // the reservation keeps the account from being archived, so it must still be there
+            throw new IllegalStateException("Could not refund transfer " + transfer.id, e);
+        }
+    }
+
+    private static MoneyServiceException transferRolledBackException(PendingTransfer transfer,
+                                                                     MoneyServiceException cause) {
+        return new MoneyServiceException(
+                MoneyServiceError.TRANSFER_CONFLICT,
+                String.format("Transfer %s is rolled back, node %d lost the credit: %s",
+                        transfer.id, transfer.node, cause.getMessage())
+        );
+    }
+
+    private static MoneyServiceException nodeUnavailableException(int node, IOException cause) {
+        return new MoneyServiceException(
+                MoneyServiceError.NODE_UNAVAILABLE,
+                String.format("Node %d is unavailable: %s", node, cause.getMessage())
+        );
+    }
+
+    private static final class PendingTransfer {
+        private final String id;
+        private final int node;
+        private final long accountFrom;
+        private final long accountTo;
+        private final BigDecimal amount;
+        private volatile TransferDecision decision;
+
+        PendingTransfer(String id, int node, long accountFrom, long accountTo, BigDecimal amount) {
+            this.id = id;
+            this.node = node;
+            this.accountFrom = accountFrom;
+            this.accountTo = accountTo;
+            this.amount = amount;
+        }
+    }
+}
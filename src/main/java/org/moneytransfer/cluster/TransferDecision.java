@@ -0,0 +1,24 @@
+package org.moneytransfer.cluster;
+
+/**
+ * What the coordinator of a cross-node transfer knows about it.
+ */
+public enum TransferDecision {
+    /**
+     * The transfer is being prepared, the participant has to ask again later.
+     */
+    UNDECIDED,
+    /**
+     * The transfer is committed, the participant has to apply the credit.
+     */
+    COMMIT,
+    /**
+     * The transfer is aborted, the participant has to forget the credit.
+     */
+    ABORT,
+    /**
+     * The coordinator knows nothing about the transfer, e.g. it was restarted, so it is presumed aborted.
+     * The coordinator never sends anything about such a transfer again.
+     */
+    UNKNOWN
+}
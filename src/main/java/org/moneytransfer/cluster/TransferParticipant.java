@@ -0,0 +1,240 @@
+package org.moneytransfer.cluster;
+
+import org.moneytransfer.service.MoneyService;
+import org.moneytransfer.service.MoneyServiceError;
+import org.moneytransfer.service.MoneyServiceException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Receiving side of a cross-node transfer: the node which owns the destination account.
+ * All operations are idempotent, so the coordinator is free to retry them.
+ * <p>
+ * Decided transfers are remembered as tombstones, so that a retried `commit` is told apart from a `commit`
+ * of a transfer this node knows nothing about, and a `prepare` delayed past its `abort` is rejected
+ * instead of leaving a credit nobody will ever decide.
+ * <p>
+ * Transfers which were not heard of for longer than `resolveAfter` are checked by a background task,
+ * which asks their coordinator for its decision. A credit which stays prepared, e.g. because the coordinator
+ * crashed, is resolved according to the answer. A tombstone is forgotten once the coordinator knows nothing
+ * about the transfer, since then it never sends anything about it again.
+ */
+public final class TransferParticipant {
+    private static final Logger LOG = LoggerFactory.getLogger(TransferParticipant.class);
+    private static final Duration DEFAULT_RESOLVE_AFTER = Duration.ofSeconds(30);
+
+    private final MoneyService moneyService;
+    private final CoordinatorClient coordinatorClient;
+    private final long resolveAfterNanos;
+    private final ConcurrentMap<String, Transfer> transfers = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService resolveExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        var thread = new Thread(r, "transfer-resolution");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public TransferParticipant(MoneyService moneyService, CoordinatorClient coordinatorClient) {
+        this(moneyService, coordinatorClient, DEFAULT_RESOLVE_AFTER);
+    }
+
+    /**
+     * @param resolveAfter how long to wait for the decision of the coordinator before asking for it
+     */
+    public TransferParticipant(MoneyService moneyService, CoordinatorClient coordinatorClient,
+                               Duration resolveAfter) {
+        this.moneyService = moneyService;
+        this.coordinatorClient = coordinatorClient;
+        this.resolveAfterNanos = resolveAfter.toNanos();
+    }
+
+    public void start(long resolveIntervalMillis) {
+        resolveExecutor.scheduleWithFixedDelay(
+                this::resolve, resolveIntervalMillis, resolveIntervalMillis, TimeUnit.MILLISECONDS
+        );
+    }
+
+    public void stop() {
+        resolveExecutor.shutdownNow();
+    }
+
+    /**
+     * Checks that the credit can be applied and remembers it until the coordinator decides.
+     *
+     * @param coordinator node which runs the transfer and is asked for the decision if it does not come
+     */
+    public void prepare(String transferId, int coordinator, long accountId, BigDecimal amount)
+            throws MoneyServiceException {
+        var transfer = transfers.computeIfAbsent(transferId, Transfer::new);
+        synchronized (transfer) {
+            switch (transfer.status) {
+                case PREPARED:
+                case COMMITTED:
+                    return;
+                case ABORTED:
+                    throw transferConflictException(transferId, "is already aborted");
+                default:
+            }
+            transfer.coordinator = coordinator;
+            try {
+                moneyService.prepareDeposit(accountId, amount);
+            } catch (MoneyServiceException e) {
+                // the coordinator returns the reservation on any error, so the transfer is aborted anyway
+                decide(transfer, Status.ABORTED);
+                throw e;
+            }
+            transfer.accountId = accountId;
+            transfer.amount = amount;
+            transfer.changedAtNanos = System.nanoTime();
+            transfer.status = Status.PREPARED;
+        }
+    }
+
+    public void commit(String transferId) throws MoneyServiceException {
+        var transfer = transfers.get(transferId);
+        if (transfer == null) {
+            throw transferConflictException(transferId, "was never prepared");
+        }
+        synchronized (transfer) {
+            switch (transfer.status) {
+                case COMMITTED:
+                    // the coordinator is retrying
+                    return;
+                case ABORTED:
+                    throw transferConflictException(transferId, "is already aborted");
+                case NEW:
+                    throw transferConflictException(transferId, "was never prepared");
+                default:
+            }
+            moneyService.commitDeposit(transfer.accountId, transfer.amount);
+            decide(transfer, Status.COMMITTED);
+        }
+    }
+
+    /**
+     * @param coordinator node which runs the transfer, it is needed to forget the transfer if it was never prepared
+     */
+    public void abort(String transferId, int coordinator) throws MoneyServiceException {
+        // the tombstone is created even for unknown transfers, since their `prepare` may still be on its way
+        var transfer = transfers.computeIfAbsent(transferId, Transfer::new);
+        synchronized (transfer) {
+            switch (transfer.status) {
+                case ABORTED:
+                    return;
+                case COMMITTED:
+                    throw transferConflictException(transferId, "is already committed");
+                case PREPARED:
+                    moneyService.cancelDeposit(transfer.accountId);
+                    break;
+                default:
+                    transfer.coordinator = coordinator;
+            }
+            decide(transfer, Status.ABORTED);
+        }
+    }
+
+    // Visible for tests
+    int size() {
+        return transfers.size();
+    }
+
+    // Visible for tests
+    void resolve() {
+        var now = System.nanoTime();
+        var stale = new HashMap<Integer, List<String>>();
+        for (Transfer transfer : transfers.values()) {
+            if (transfer.status != Status.NEW && now - transfer.changedAtNanos >= resolveAfterNanos) {
+                stale.computeIfAbsent(transfer.coordinator, node -> new ArrayList<>()).add(transfer.id);
+            }
+        }
+        stale.forEach(this::resolve);
+    }
+
+    private void resolve(int coordinator, List<String> transferIds) {
+        Map<String, TransferDecision> decisions;
+        try {
+            decisions = coordinatorClient.decisions(coordinator, transferIds);
+        } catch (MoneyServiceException | IOException e) {
+            LOG.warn("Could not ask node {} for decisions of {} transfers, will retry: {}",
+                    coordinator, transferIds.size(), e.getMessage());
+            return;
+        }
+        decisions.forEach((transferId, decision) -> {
+            var transfer = transfers.get(transferId);
+            if (transfer == null) {
+                return;
+            }
+            try {
+                resolve(transfer, decision);
+            } catch (MoneyServiceException e) {
+                LOG.error("Could not apply {} of transfer {}: {}", decision, transferId, e.getMessage());
+            }
+        });
+    }
+
+    private void resolve(Transfer transfer, TransferDecision decision) throws MoneyServiceException {
+        synchronized (transfer) {
+            if (transfer.status == Status.PREPARED) {
+                switch (decision) {
+                    case COMMIT:
+                        commit(transfer.id);
+                        break;
+                    case ABORT:
+                    case UNKNOWN:
+                        abort(transfer.id, transfer.coordinator);
+                        break;
+                    default:
+                }
+            }
+            if (decision == TransferDecision.UNKNOWN && transfer.status != Status.PREPARED) {
+                transfers.remove(transfer.id, transfer);
+            }
+        }
+    }
+
+    // Must be called under the lock of the transfer
+    private static void decide(Transfer transfer, Status status) {
+        transfer.changedAtNanos = System.nanoTime();
+        transfer.status = status;
+    }
+
+    private static MoneyServiceException transferConflictException(String transferId, String reason) {
+        return new MoneyServiceException(
+                MoneyServiceError.TRANSFER_CONFLICT,
+                String.format("Transfer %s %s", transferId, reason)
+        );
+    }
+
+    private enum Status {
+        NEW,
+        PREPARED,
+        COMMITTED,
+        ABORTED
+    }
+
+    private static final class Transfer {
+        private final String id;
+        private volatile Status status = Status.NEW;
+        private int coordinator;
+        private long accountId;
+        private BigDecimal amount;
+        // time of the last change of the status, written before the status
+        private long changedAtNanos;
+
+        Transfer(String id) {
+            this.id = id;
+        }
+    }
+}
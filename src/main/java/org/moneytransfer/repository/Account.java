@@ -5,6 +5,9 @@ import java.math.BigDecimal;
 public final class Account {
     private final long id;
     private volatile BigDecimal balance;
+    private volatile AccountStatus status = AccountStatus.ACTIVE;
+    private volatile long version;
+    private int pendingTransfers;
 
     public Account(long id, BigDecimal balance) {
         this.id = id;
@@ -19,7 +22,43 @@ public final class Account {
         return balance;
     }
 
+    public AccountStatus getStatus() {
+        return status;
+    }
+
+    /**
+     * Version grows with every change of the balance or the status. It is updated after them,
+     * so the state read after the version is at least as new as the version.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Must be called under the lock of the account.
+     */
     public void setBalance(BigDecimal balance) {
         this.balance = balance;
+        this.version = version + 1;
+    }
+
+    /**
+     * Must be called under the lock of the account.
+     */
+    public void setStatus(AccountStatus status) {
+        this.status = status;
+        this.version = version + 1;
+    }
+
+    /**
+     * Number of cross-node transfers which involve the account and are not decided yet.
+     * Must be accessed under the lock of the account.
+     */
+    public int getPendingTransfers() {
+        return pendingTransfers;
+    }
+
+    public void setPendingTransfers(int pendingTransfers) {
+        this.pendingTransfers = pendingTransfers;
     }
 }
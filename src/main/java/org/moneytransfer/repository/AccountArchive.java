@@ -0,0 +1,76 @@
+package org.moneytransfer.repository;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.OptionalLong;
+
+/**
+ * Compact storage of archived accounts.
+ * Archived accounts are closed and have zero balance, so only ids and versions are kept,
+ * in two sorted columns, which are replaced as a whole when new accounts are added.
+ * Adding is linear in the size of the archive, so accounts are supposed to be added in large batches.
+ */
+public final class AccountArchive {
+    private volatile Columns columns = new Columns(new long[0], new long[0]);
+
+    /**
+     * @return version of the account at the moment of archiving, or empty if the account is not archived
+     */
+    public OptionalLong findVersion(long id) {
+        var snapshot = columns;
+        var index = Arrays.binarySearch(snapshot.ids, id);
+        return index < 0 ? OptionalLong.empty() : OptionalLong.of(snapshot.versions[index]);
+    }
+
+    public int size() {
+        return columns.ids.length;
+    }
+
+    /**
+     * Adds accounts which are not archived yet, accounts which are already archived are skipped.
+     */
+    synchronized void addAll(Collection<Account> accounts) {
+        var added = accounts.stream()
+                .sorted((a, b) -> Long.compare(a.getId(), b.getId()))
+                .toArray(Account[]::new);
+        var old = columns;
+        var ids = new long[old.ids.length + added.length];
+        var versions = new long[ids.length];
+        // merge of two sorted sequences, which keeps only the first of equal ids
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        while (i < old.ids.length || j < added.length) {
+            long id;
+            long version;
+            if (j == added.length || (i < old.ids.length && old.ids[i] <= added[j].getId())) {
+                id = old.ids[i];
+                version = old.versions[i];
+                i++;
+            } else {
+                id = added[j].getId();
+                version = added[j].getVersion();
+                j++;
+            }
+            if (k > 0 && ids[k - 1] == id) {
+                continue;
+            }
+            ids[k] = id;
+            versions[k] = version;
+            k++;
+        }
+        columns = k == ids.length
+                ? new Columns(ids, versions)
+                : new Columns(Arrays.copyOf(ids, k), Arrays.copyOf(versions, k));
+    }
+
+    private static final class Columns {
+        private final long[] ids;
+        private final long[] versions;
+
+        Columns(long[] ids, long[] versions) {
+            this.ids = ids;
+            this.versions = versions;
+        }
+    }
+}
@@ -1,27 +1,81 @@
 package org.moneytransfer.repository;
 
 import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Optional;
+import java.util.OptionalLong;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicLong;
 
 public final class AccountRepository {
     private final ConcurrentMap<Long, Account> storage = new ConcurrentHashMap<>();
-    private final AtomicLong nextId = new AtomicLong();
+    private final AccountArchive archive = new AccountArchive();
+    private final AtomicLong nextId;
+    private final long idStep;
 
+    public AccountRepository() {
+        this(0, 1);
+    }
+
+    /**
+     * Creates repository which allocates ids `firstId`, `firstId + idStep`, `firstId + 2 * idStep` and so on.
+     * Used in cluster mode, so that every node allocates ids only from its own partition.
+     */
+    public AccountRepository(long firstId, long idStep) {
+        if (idStep <= 0) {
+            throw new IllegalArgumentException("idStep must be positive, got " + idStep);
+        }
+        this.nextId = new AtomicLong(firstId);
+        this.idStep = idStep;
+    }
+
+    /**
+     * Finds account which is not archived.
+     */
     public Optional<Account> find(long id) {
         return Optional.ofNullable(storage.get(id));
     }
 
+    /**
+     * @return version of the archived account, or empty if the account is not archived
+     */
+    public OptionalLong findArchivedVersion(long id) {
+        return archive.findVersion(id);
+    }
+
+    /**
+     * @return accounts which are not archived, the view is weakly consistent
+     */
+    public Collection<Account> findAll() {
+        return Collections.unmodifiableCollection(storage.values());
+    }
+
+    /**
+     * Moves accounts to the archive. The accounts must already have {@link AccountStatus#ARCHIVED} status.
+     */
+    public void archive(Collection<Account> accounts) {
+        // added to the archive first, so that every account can always be found in one of the two places
+        archive.addAll(accounts);
+        for (Account account : accounts) {
+            storage.remove(account.getId());
+        }
+    }
+
+    public int archivedCount() {
+        return archive.size();
+    }
+
     /**
      * Creates new account.
-     * Note that ids of accounts are consecutive, i.e. when N accounts are created, they will have ids from 0 to N-1.
+     * Note that ids of accounts are consecutive within the repository, i.e. when N accounts are created by
+     * a repository with default settings, they will have ids from 0 to N-1.
      *
      * @return newly created account
      */
     public Account create() {
-        var id = nextId.getAndIncrement();
+        var id = nextId.getAndAdd(idStep);
         var account = new Account(id, BigDecimal.ZERO);
         storage.put(id, account);
         return account;
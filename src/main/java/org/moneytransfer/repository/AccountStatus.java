@@ -0,0 +1,17 @@
+package org.moneytransfer.repository;
+
+public enum AccountStatus {
+    ACTIVE,
+    /**
+     * Balance can not be changed until the account is unfrozen.
+     */
+    FROZEN,
+    /**
+     * Money can only be withdrawn, so that the remaining balance can be paid out.
+     */
+    CLOSED,
+    /**
+     * Closed account with zero balance, moved to {@link AccountArchive}.
+     */
+    ARCHIVED
+}
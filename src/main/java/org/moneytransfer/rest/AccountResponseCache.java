@@ -0,0 +1,137 @@
+package org.moneytransfer.rest;
+
+import io.javalin.plugin.json.JavalinJson;
+import org.moneytransfer.repository.AccountStatus;
+import org.moneytransfer.service.MoneyService;
+import org.moneytransfer.service.MoneyServiceException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Serialized `GET /accounts/:id` responses, reused for as long as the version of the account stays the same.
+ * <p>
+ * At most `capacity` responses are kept. When there are more, the ones which were not read since the previous
+ * pass of the eviction "clock hand" are evicted. Responses of archived accounts are not cached,
+ * and responses of accounts moved to the archive are evicted via {@link #evict}.
+ */
+final class AccountResponseCache {
+    // versions start from zero on every start, so ETags issued before a restart must not match
+    private final String epoch = Long.toHexString(ThreadLocalRandom.current().nextLong());
+    private final MoneyService moneyService;
+    private final int capacity;
+    private final ConcurrentMap<Long, CachedResponse> responses = new ConcurrentHashMap<>();
+    // guarded by `this`
+    private Iterator<CachedResponse> clockHand;
+
+    AccountResponseCache(MoneyService moneyService, int capacity) {
+        this.moneyService = moneyService;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Current ETag of the account, derived from its version without building the response,
+     * so that conditional requests which end in `304 Not Modified` cost next to nothing.
+     */
+    String etag(long id) throws MoneyServiceException {
+        return etagOfVersion(moneyService.getAccountVersion(id));
+    }
+
+    CachedResponse get(long id) throws MoneyServiceException {
+        var version = moneyService.getAccountVersion(id);
+        var cached = responses.get(id);
+        if (cached != null && cached.version == version) {
+            if (!cached.referenced) {
+                cached.referenced = true;
+            }
+            return cached;
+        }
+        // the account may change meanwhile, then the body is newer than `version`, which only costs a cache miss
+        var account = moneyService.getAccount(id);
+        var body = JavalinJson.toJson(AccountInfoResponse.ok(account));
+        var fresh = new CachedResponse(version, etagOfVersion(version), body.getBytes(StandardCharsets.UTF_8));
+        if (account.getStatus() == AccountStatus.ARCHIVED) {
+            return fresh;
+        }
+        // keep the newest response if concurrent readers race
+        var result = responses.merge(id, fresh, (old, candidate) -> old.version >= candidate.version ? old : candidate);
+        if (responses.size() > capacity) {
+            evictUnreferenced();
+        }
+        return result;
+    }
+
+    void evict(long id) {
+        responses.remove(id);
+    }
+
+    // Visible for tests
+    int size() {
+        return responses.size();
+    }
+
+    private synchronized void evictUnreferenced() {
+        while (responses.size() > capacity) {
+            if (clockHand == null || !clockHand.hasNext()) {
+                clockHand = responses.values().iterator();
+                if (!clockHand.hasNext()) {
+                    return;
+                }
+            }
+            var candidate = clockHand.next();
+            if (candidate.referenced) {
+                // second chance, it is evicted on the next pass unless it is read again
+                candidate.referenced = false;
+            } else {
+                clockHand.remove();
+            }
+        }
+    }
+
+    private String etagOfVersion(long version) {
+        return '"' + epoch + '-' + version + '"';
+    }
+
+    /**
+     * @param ifNoneMatch value of the `If-None-Match` header, may be `null`
+     */
+    static boolean matches(String etag, String ifNoneMatch) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static final class CachedResponse {
+        private final long version;
+        private final String etag;
+        private final byte[] body;
+        private volatile boolean referenced;
+
+        private CachedResponse(long version, String etag, byte[] body) {
+            this.version = version;
+            this.etag = etag;
+            this.body = body;
+        }
+
+        String etag() {
+            return etag;
+        }
+
+        byte[] body() {
+            return body;
+        }
+    }
+}
@@ -2,20 +2,67 @@ package org.moneytransfer.rest;
 
 import com.fasterxml.jackson.databind.JsonMappingException;
 import io.javalin.Javalin;
+import io.javalin.http.Context;
+import io.javalin.http.UnauthorizedResponse;
 import io.javalin.plugin.json.JavalinJson;
+import org.moneytransfer.cluster.Cluster;
+import org.moneytransfer.cluster.ClusterClient;
+import org.moneytransfer.cluster.TransferCoordinator;
+import org.moneytransfer.cluster.TransferDecision;
+import org.moneytransfer.cluster.TransferParticipant;
 import org.moneytransfer.repository.AccountRepository;
+import org.moneytransfer.service.AccountCompactor;
+import org.moneytransfer.service.BalanceEventRing;
 import org.moneytransfer.service.MoneyService;
 import org.moneytransfer.service.MoneyServiceException;
 
+import java.io.ByteArrayInputStream;
+import java.util.HashMap;
+
 public final class App {
 
-    private static Javalin app;
+    private static final long RECOVERY_INTERVAL_MILLIS = 1000;
+    private static final int BALANCE_EVENT_RING_CAPACITY = 64 * 1024;
+    private static final long BALANCE_EVENT_POLL_INTERVAL_MILLIS = 50;
+    private static final long COMPACTION_INTERVAL_MILLIS = 60_000;
+    private static final int ACCOUNT_RESPONSE_CACHE_CAPACITY = 100_000;
+
+    private final Javalin app;
+    private final TransferCoordinator transferCoordinator;
+    private final TransferParticipant transferParticipant;
+    private final BalanceEventStream balanceEventStream;
+    private final AccountCompactor accountCompactor;
+
+    private App(Javalin app, TransferCoordinator transferCoordinator, TransferParticipant transferParticipant,
+                BalanceEventStream balanceEventStream, AccountCompactor accountCompactor) {
+        this.app = app;
+        this.transferCoordinator = transferCoordinator;
+        this.transferParticipant = transferParticipant;
+        this.balanceEventStream = balanceEventStream;
+        this.accountCompactor = accountCompactor;
+    }
+
+    // Visible for tests
+    static App start(int port) {
+        return start(port, Cluster.single(port));
+    }
 
+    /**
+     * Starts a node of the cluster. Requests which concern accounts owned by other nodes are forwarded to the owner.
+     */
     // Visible for tests
-    static void start(int port) {
-        var accountDao = new AccountRepository();
-        var moneyService = new MoneyService(accountDao);
-        app = Javalin.create().start(port);
+    static App start(int port, Cluster cluster) {
+        var accountDao = new AccountRepository(cluster.self(), cluster.size());
+        var balanceEvents = new BalanceEventRing(BALANCE_EVENT_RING_CAPACITY);
+        var moneyService = new MoneyService(accountDao, balanceEvents);
+        var balanceEventStream = new BalanceEventStream(balanceEvents, cluster);
+        var accountResponseCache = new AccountResponseCache(moneyService, ACCOUNT_RESPONSE_CACHE_CAPACITY);
+        moneyService.addArchiveListener(accountResponseCache::evict);
+        var accountCompactor = new AccountCompactor(moneyService);
+        var clusterClient = new ClusterClient(cluster);
+        var transferCoordinator = new TransferCoordinator(moneyService, cluster, clusterClient);
+        var transferParticipant = new TransferParticipant(moneyService, clusterClient);
+        var app = Javalin.create().start(port);
         app.exception(ParamException.class, (e, ctx) -> {
             ctx.status(400);
             ctx.result(e.getMessage());
@@ -31,53 +78,188 @@ public final class App {
                 case INSUFFICIENT_BALANCE:
                     ctx.status(403);
                     break;
+                case ACCOUNT_FROZEN:
+                case ACCOUNT_CLOSED:
+                case ACCOUNT_NOT_ARCHIVABLE:
+                case TRANSFER_CONFLICT:
+                    ctx.status(409);
+                    break;
                 case ACCOUNT_NOT_FOUND:
                     ctx.status(404);
                     break;
+                case NODE_UNAVAILABLE:
+                    ctx.status(503);
+                    break;
+                case OUTCOME_UNKNOWN:
+                    ctx.status(504);
+                    break;
                 default:
                     ctx.status(500);
             }
             ctx.json(MoneyOperationResponse.error(e.getErrorStatus(), e.getMessage()));
         }).get("/accounts/:id", ctx -> {
             var id = longPathParam(ctx, "id");
-            var account = moneyService.getAccount(id);
-            ctx.json(AccountInfoResponse.ok(account));
+            if (forwardIfRemote(ctx, cluster, clusterClient, id)) {
+                return;
+            }
+            var etag = accountResponseCache.etag(id);
+            if (AccountResponseCache.matches(etag, ctx.header("If-None-Match"))) {
+                ctx.header("ETag", etag);
+                ctx.status(304);
+                return;
+            }
+            var response = accountResponseCache.get(id);
+            ctx.header("ETag", response.etag());
+            ctx.contentType("application/json");
+            ctx.result(new ByteArrayInputStream(response.body()));
         }).post("/accounts", ctx -> {
             var account = moneyService.createAccount();
             ctx.status(201);
             ctx.json(AccountInfoResponse.ok(account));
         }).post("/accounts/:id/deposit", ctx -> {
             var id = longPathParam(ctx, "id");
+            if (forwardIfRemote(ctx, cluster, clusterClient, id)) {
+                return;
+            }
             var request = JavalinJson.fromJson(ctx.body(), MoneyOperationRequest.class);
             var amount = request.getAmount();
             moneyService.deposit(id, amount);
             ctx.json(MoneyOperationResponse.ok("Deposit succeeded"));
         }).post("/accounts/:id/withdraw", ctx -> {
             var id = longPathParam(ctx, "id");
+            if (forwardIfRemote(ctx, cluster, clusterClient, id)) {
+                return;
+            }
             var request = JavalinJson.fromJson(ctx.body(), MoneyOperationRequest.class);
             var amount = request.getAmount();
             moneyService.withdraw(id, amount);
             ctx.json(MoneyOperationResponse.ok("Withdraw succeeded"));
+        }).post("/accounts/:id/freeze", ctx -> {
+            var id = longPathParam(ctx, "id");
+            if (forwardIfRemote(ctx, cluster, clusterClient, id)) {
+                return;
+            }
+            moneyService.freeze(id);
+            ctx.json(MoneyOperationResponse.ok("Account frozen"));
+        }).post("/accounts/:id/unfreeze", ctx -> {
+            var id = longPathParam(ctx, "id");
+            if (forwardIfRemote(ctx, cluster, clusterClient, id)) {
+                return;
+            }
+            moneyService.unfreeze(id);
+            ctx.json(MoneyOperationResponse.ok("Account unfrozen"));
+        }).post("/accounts/:id/close", ctx -> {
+            var id = longPathParam(ctx, "id");
+            if (forwardIfRemote(ctx, cluster, clusterClient, id)) {
+                return;
+            }
+            moneyService.close(id);
+            ctx.json(MoneyOperationResponse.ok("Account closed"));
+        }).post("/accounts/:id/archive", ctx -> {
+            var id = longPathParam(ctx, "id");
+            if (forwardIfRemote(ctx, cluster, clusterClient, id)) {
+                return;
+            }
+            moneyService.archive(id);
+            ctx.json(MoneyOperationResponse.ok("Account archived"));
         }).post("/transfers/:from/:to", ctx -> {
             var from = longPathParam(ctx, "from");
             var to = longPathParam(ctx, "to");
+            // the owner of the source account coordinates the transfer
+            if (forwardIfRemote(ctx, cluster, clusterClient, from)) {
+                return;
+            }
             var request = JavalinJson.fromJson(ctx.body(), MoneyOperationRequest.class);
             var amount = request.getAmount();
-            moneyService.transfer(from, to, amount);
+            if (from == to || cluster.isLocal(to)) {
+                moneyService.transfer(from, to, amount);
+            } else {
+                transferCoordinator.transfer(from, to, amount);
+            }
             ctx.json(MoneyOperationResponse.ok("Transfer succeeded"));
+        }).sse("/events/balances", client -> {
+            balanceEventStream.subscribe(client);
         });
+        if (cluster.size() > 1) {
+            // a committed credit is not backed by any withdrawal on this node, so only other nodes may call these
+            app.before("/internal/*", ctx -> {
+                if (!cluster.isSecret(ctx.header(Cluster.SECRET_HEADER))) {
+                    throw new UnauthorizedResponse();
+                }
+            }).post("/internal/transfers/:transfer/prepare/:to", ctx -> {
+                var to = longPathParam(ctx, "to");
+                var coordinator = intQueryParam(ctx, "coordinator");
+                var request = JavalinJson.fromJson(ctx.body(), MoneyOperationRequest.class);
+                transferParticipant.prepare(ctx.pathParam("transfer"), coordinator, to, request.getAmount());
+                ctx.json(MoneyOperationResponse.ok("Transfer prepared"));
+            }).post("/internal/transfers/:transfer/commit", ctx -> {
+                transferParticipant.commit(ctx.pathParam("transfer"));
+                ctx.json(MoneyOperationResponse.ok("Transfer committed"));
+            }).post("/internal/transfers/:transfer/abort", ctx -> {
+                transferParticipant.abort(ctx.pathParam("transfer"), intQueryParam(ctx, "coordinator"));
+                ctx.json(MoneyOperationResponse.ok("Transfer aborted"));
+            }).post("/internal/transfers/decisions", ctx -> {
+                var decisions = new HashMap<String, TransferDecision>();
+                for (String transferId : JavalinJson.fromJson(ctx.body(), String[].class)) {
+                    decisions.put(transferId, transferCoordinator.decisionOf(transferId));
+                }
+                ctx.json(decisions);
+            });
+            transferCoordinator.start(RECOVERY_INTERVAL_MILLIS);
+            transferParticipant.start(RECOVERY_INTERVAL_MILLIS);
+        }
+        balanceEventStream.start(BALANCE_EVENT_POLL_INTERVAL_MILLIS);
+        accountCompactor.start(COMPACTION_INTERVAL_MILLIS);
+        return new App(app, transferCoordinator, transferParticipant, balanceEventStream, accountCompactor);
     }
 
     // Visible for tests
-    static void stop() {
+    void stop() {
+        transferCoordinator.stop();
+        transferParticipant.stop();
+        balanceEventStream.stop();
+        accountCompactor.stop();
         app.stop();
     }
 
+    /**
+     * Starts a single node at port 8080 by default.
+     * To start a node of a cluster, pass
+     * `-Dcluster.nodes=http://host-a:8080,http://host-b:8080 -Dcluster.self=0 -Dcluster.secret=...`,
+     * where `cluster.self` is the index of this node in `cluster.nodes`,
+     * and `cluster.secret` is shared by all nodes and authenticates their calls to each other.
+     */
     public static void main(String[] args) {
-        start(8080);
+        var nodes = System.getProperty("cluster.nodes");
+        if (nodes == null) {
+            start(8080);
+        } else {
+            var cluster = Cluster.parse(
+                    nodes, Integer.getInteger("cluster.self", 0), System.getProperty("cluster.secret", "")
+            );
+            start(cluster.uri(cluster.self()).getPort(), cluster);
+        }
     }
 
-    private static long longPathParam(io.javalin.http.Context ctx, String name) throws ParamException {
+    private static boolean forwardIfRemote(Context ctx, Cluster cluster, ClusterClient clusterClient, long id)
+            throws MoneyServiceException {
+        if (cluster.isLocal(id)) {
+            return false;
+        }
+        var headers = new HashMap<String, String>();
+        var ifNoneMatch = ctx.header("If-None-Match");
+        if (ifNoneMatch != null) {
+            headers.put("If-None-Match", ifNoneMatch);
+        }
+        var response = clusterClient.forward(cluster.ownerOf(id), ctx.method(), ctx.path(), headers, ctx.body());
+        ctx.status(response.statusCode());
+        response.headers().firstValue("Content-Type").ifPresent(ctx::contentType);
+        response.headers().firstValue("ETag").ifPresent(etag -> ctx.header("ETag", etag));
+        ctx.result(response.body());
+        return true;
+    }
+
+    private static long longPathParam(Context ctx, String name) throws ParamException {
         var longStr = ctx.pathParam(name);
         try {
             return Long.parseLong(longStr);
@@ -88,6 +270,17 @@ public final class App {
         }
     }
 
+    private static int intQueryParam(Context ctx, String name) throws ParamException {
+        var intStr = ctx.queryParam(name);
+        try {
+            return Integer.parseInt(intStr);
+        } catch (NumberFormatException ex) {
+            throw new ParamException(
+                    String.format("Query param '%s' is expected to be a number, but got '%s'", name, intStr)
+            );
+        }
+    }
+
     private static class ParamException extends Exception {
         ParamException(String message) {
             super(message);
@@ -0,0 +1,178 @@
+package org.moneytransfer.rest;
+
+import io.javalin.http.sse.SseClient;
+import io.javalin.plugin.json.JavalinJson;
+import org.moneytransfer.cluster.Cluster;
+import org.moneytransfer.service.BalanceEvent;
+import org.moneytransfer.service.BalanceEventRing;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Delivers events from {@link BalanceEventRing} to Server-Sent Events subscribers.
+ * <p>
+ * Every subscriber reads the ring with its own cursor on a thread of its own, so a slow subscriber
+ * delays nobody but itself. If it falls behind by more than the capacity of the ring, the missed events
+ * are dropped and it receives a `resync` event, after which it is expected to re-read the accounts it needs.
+ */
+final class BalanceEventStream {
+    private static final int BATCH_SIZE = 256;
+    private static final long HEARTBEAT_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(15);
+
+    private final BalanceEventRing ring;
+    private final Cluster cluster;
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService poller = Executors.newSingleThreadScheduledExecutor(
+            daemonThreads("balance-events-poller")
+    );
+    private final ExecutorService writers = Executors.newCachedThreadPool(daemonThreads("balance-events-writer"));
+
+    BalanceEventStream(BalanceEventRing ring, Cluster cluster) {
+        this.ring = ring;
+        this.cluster = cluster;
+    }
+
+    void start(long pollIntervalMillis) {
+        poller.scheduleWithFixedDelay(this::poll, pollIntervalMillis, pollIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    void stop() {
+        poller.shutdownNow();
+        writers.shutdownNow();
+        for (Subscriber subscriber : subscribers) {
+            subscriber.client.ctx.req.getAsyncContext().complete();
+        }
+        subscribers.clear();
+    }
+
+    /**
+     * Subscribes the client to events of accounts listed in the `accounts` query param (comma-separated),
+     * or to events of all accounts if the param is absent. Only accounts owned by this node are streamed,
+     * so a subscription to an account owned by another node is rejected. Honors `Last-Event-ID` of reconnecting clients.
+     * The first event is `subscribed` with the sequence of the first event the client will receive,
+     * so the client knows that changes made after it are not missed.
+     */
+    void subscribe(SseClient client) {
+        var accounts = client.ctx.queryParam("accounts");
+        Set<Long> accountIds = null;
+        if (accounts != null) {
+            accountIds = new HashSet<>();
+            for (String idStr : accounts.split(",")) {
+                long id;
+                try {
+                    id = Long.parseLong(idStr.trim());
+                } catch (NumberFormatException e) {
+                    reject(client, String.format("Account id is expected to be a number, but got '%s'", idStr));
+                    return;
+                }
+                if (!cluster.isLocal(id)) {
+                    var owner = cluster.ownerOf(id);
+                    reject(client, String.format(
+                            "Account %d is owned by node %d, subscribe at %s", id, owner, cluster.uri(owner)
+                    ));
+                    return;
+                }
+                accountIds.add(id);
+            }
+        }
+        var subscriber = new Subscriber(client, accountIds, startSequence(client.ctx.header("Last-Event-ID")));
+        // sent before the subscriber is registered, so that it always comes before any other event
+        client.sendEvent("subscribed", JavalinJson.toJson(Map.of("sequence", subscriber.cursor)));
+        client.onClose(() -> subscribers.remove(subscriber));
+        subscribers.add(subscriber);
+    }
+
+    private static void reject(SseClient client, String message) {
+        client.sendEvent("error", message);
+        client.ctx.req.getAsyncContext().complete();
+    }
+
+    private long startSequence(String lastEventId) {
+        var next = ring.nextSequence();
+        if (lastEventId == null) {
+            return next;
+        }
+        try {
+            // the ring tells whether the events after `lastEventId` are still there
+            return Math.min(Long.parseLong(lastEventId) + 1, next);
+        } catch (NumberFormatException e) {
+            return next;
+        }
+    }
+
+    private void poll() {
+        var next = ring.nextSequence();
+        var now = System.nanoTime();
+        for (Subscriber subscriber : subscribers) {
+            var idle = now - subscriber.lastSentNanos > HEARTBEAT_INTERVAL_NANOS;
+            if ((subscriber.cursor < next || idle) && subscriber.draining.compareAndSet(false, true)) {
+                writers.execute(subscriber::drain);
+            }
+        }
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        return r -> {
+            var thread = new Thread(r, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private final class Subscriber {
+        private final SseClient client;
+        private final Set<Long> accountIds;
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private volatile long cursor;
+        private volatile long lastSentNanos = System.nanoTime();
+
+        Subscriber(SseClient client, Set<Long> accountIds, long cursor) {
+            this.client = client;
+            this.accountIds = accountIds;
+            this.cursor = cursor;
+        }
+
+        void drain() {
+            try {
+                var position = cursor;
+                while (position < ring.nextSequence() && subscribers.contains(this)) {
+                    var next = ring.read(position, BATCH_SIZE, this::send);
+                    if (next == -1) {
+                        // missed events are dropped, the client has to re-read the state
+                        next = ring.nextSequence();
+                        client.sendEvent("resync", JavalinJson.toJson(Map.of("sequence", next)));
+                        lastSentNanos = System.nanoTime();
+                    } else if (next == position) {
+                        // the next event is being published right now, it will be picked up by the next poll
+                        break;
+                    }
+                    position = next;
+                }
+                cursor = position;
+                // lets filtering subscribers notice that the connection is alive, and lets us notice that it is not
+                if (System.nanoTime() - lastSentNanos > HEARTBEAT_INTERVAL_NANOS) {
+                    client.sendEvent("heartbeat", JavalinJson.toJson(Map.of("sequence", position)));
+                    lastSentNanos = System.nanoTime();
+                }
+            } finally {
+                draining.set(false);
+            }
+        }
+
+        private void send(BalanceEvent event) {
+            if (accountIds == null || accountIds.contains(event.getAccountId())) {
+                client.sendEvent("balance", JavalinJson.toJson(event), Long.toString(event.getSequence()));
+                lastSentNanos = System.nanoTime();
+            }
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package org.moneytransfer.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically moves closed accounts with zero balance out of the hot storage into the archive.
+ */
+public final class AccountCompactor {
+    private static final Logger LOG = LoggerFactory.getLogger(AccountCompactor.class);
+
+    private final MoneyService moneyService;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        var thread = new Thread(r, "account-compactor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public AccountCompactor(MoneyService moneyService) {
+        this.moneyService = moneyService;
+    }
+
+    public void start(long intervalMillis) {
+        executor.scheduleWithFixedDelay(this::compact, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    private void compact() {
+        try {
+            var archived = moneyService.archiveClosedAccounts();
+            if (archived > 0) {
+                LOG.info("Archived {} closed accounts", archived);
+            }
+        } catch (RuntimeException e) {
+            // an exception would cancel the schedule
+            LOG.error("Compaction failed", e);
+        }
+    }
+}
@@ -3,16 +3,22 @@ package org.moneytransfer.service;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
+import org.moneytransfer.repository.AccountStatus;
+
 import java.math.BigDecimal;
 
 public final class AccountDto {
     private final long id;
     private final BigDecimal balance;
+    private final AccountStatus status;
 
     @JsonCreator
-    public AccountDto(@JsonProperty("id") long id, @JsonProperty("balance") BigDecimal balance) {
+    public AccountDto(@JsonProperty("id") long id,
+                      @JsonProperty("balance") BigDecimal balance,
+                      @JsonProperty("status") AccountStatus status) {
         this.id = id;
         this.balance = balance;
+        this.status = status;
     }
 
     public long getId() {
@@ -22,4 +28,8 @@ public final class AccountDto {
     public BigDecimal getBalance() {
         return balance;
     }
+
+    public AccountStatus getStatus() {
+        return status;
+    }
 }
@@ -0,0 +1,37 @@
+package org.moneytransfer.service;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.math.BigDecimal;
+
+/**
+ * Balance of the account right after a committed change.
+ * Sequences are assigned by {@link BalanceEventRing} and grow by one with every published event.
+ */
+public final class BalanceEvent {
+    private final long sequence;
+    private final long accountId;
+    private final BigDecimal balance;
+
+    @JsonCreator
+    public BalanceEvent(@JsonProperty("sequence") long sequence,
+                        @JsonProperty("accountId") long accountId,
+                        @JsonProperty("balance") BigDecimal balance) {
+        this.sequence = sequence;
+        this.accountId = accountId;
+        this.balance = balance;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public long getAccountId() {
+        return accountId;
+    }
+
+    public BigDecimal getBalance() {
+        return balance;
+    }
+}
@@ -0,0 +1,70 @@
+package org.moneytransfer.service;
+
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * Bounded lock-free ring of the latest balance events.
+ * Publishing never waits for readers: when the ring is full, the oldest events are overwritten,
+ * and readers which have not consumed them yet find out about it on the next {@link #read}.
+ */
+public final class BalanceEventRing {
+    private final AtomicReferenceArray<BalanceEvent> slots;
+    private final int mask;
+    private final AtomicLong nextSequence = new AtomicLong();
+
+    /**
+     * @param capacity number of events kept in the ring, must be a power of two
+     */
+    public BalanceEventRing(int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a positive power of two, got " + capacity);
+        }
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+    }
+
+    public void publish(long accountId, BigDecimal balance) {
+        store(new BalanceEvent(nextSequence.getAndIncrement(), accountId, balance));
+    }
+
+    // Visible for tests
+    void store(BalanceEvent event) {
+        // a publisher delayed by a whole lap must not overwrite the newer event stored in the slot meanwhile,
+        // then its own event is lost, and readers which need it find out about it like about any overwritten one
+        slots.accumulateAndGet((int) (event.getSequence() & mask), event,
+                (current, candidate) -> current == null || current.getSequence() < candidate.getSequence()
+                        ? candidate
+                        : current);
+    }
+
+    /**
+     * @return sequence which will be assigned to the next published event
+     */
+    public long nextSequence() {
+        return nextSequence.get();
+    }
+
+    /**
+     * Passes events starting from `sequence` to `sink`, in order, until `maxEvents` are passed
+     * or an event which is not published yet is reached.
+     *
+     * @return sequence to continue reading from, or -1 if some events starting from `sequence` were overwritten
+     */
+    public long read(long sequence, int maxEvents, Consumer<BalanceEvent> sink) {
+        for (int i = 0; i < maxEvents; i++, sequence++) {
+            var event = slots.get((int) (sequence & mask));
+            if (event == null || event.getSequence() < sequence) {
+                // the writer has not stored this event yet
+                break;
+            }
+            if (event.getSequence() > sequence) {
+                return -1;
+            }
+            sink.accept(event);
+        }
+        return sequence;
+    }
+}
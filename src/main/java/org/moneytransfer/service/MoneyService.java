@@ -3,33 +3,81 @@ package org.moneytransfer.service;
 
 import org.moneytransfer.repository.Account;
 import org.moneytransfer.repository.AccountRepository;
+import org.moneytransfer.repository.AccountStatus;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.LongConsumer;
 
 public final class MoneyService {
 
+    private static final int DEFAULT_EVENT_RING_CAPACITY = 1024;
+
     private final AccountRepository accountRepository;
+    private final BalanceEventRing balanceEvents;
+    private final List<LongConsumer> archiveListeners = new CopyOnWriteArrayList<>();
 
     public MoneyService(AccountRepository accountRepository) {
+        this(accountRepository, new BalanceEventRing(DEFAULT_EVENT_RING_CAPACITY));
+    }
+
+    /**
+     * @param balanceEvents ring to which the new balance of every changed account is published after the change
+     */
+    public MoneyService(AccountRepository accountRepository, BalanceEventRing balanceEvents) {
         this.accountRepository = accountRepository;
+        this.balanceEvents = balanceEvents;
+    }
+
+    /**
+     * @param listener is called with the id of every account moved out of the hot storage into the archive
+     */
+    public void addArchiveListener(LongConsumer listener) {
+        archiveListeners.add(listener);
     }
 
     public AccountDto createAccount() {
-        return accountToDto(accountRepository.create());
+        var account = accountRepository.create();
+        synchronized (account) {
+            publish(account);
+        }
+        return accountToDto(account);
     }
 
     public AccountDto getAccount(long id) throws MoneyServiceException {
-        var account = accountRepository.find(id).orElseThrow(() -> accountNotFoundException(id));
-        return accountToDto(account);
+        var account = accountRepository.find(id);
+        if (account.isPresent()) {
+            return accountToDto(account.get());
+        }
+        if (accountRepository.findArchivedVersion(id).isPresent()) {
+            return new AccountDto(id, BigDecimal.ZERO, AccountStatus.ARCHIVED);
+        }
+        throw accountNotFoundException(id);
+    }
+
+    /**
+     * Cheap way to find out whether the account changed since it was last read.
+     * The result of {@link #getAccount} called afterwards is at least as new as the returned version.
+     */
+    public long getAccountVersion(long id) throws MoneyServiceException {
+        var account = accountRepository.find(id);
+        if (account.isPresent()) {
+            return account.get().getVersion();
+        }
+        return accountRepository.findArchivedVersion(id).orElseThrow(() -> accountNotFoundException(id));
     }
 
     public void deposit(long id, BigDecimal amount) throws MoneyServiceException {
         if (amount.compareTo(BigDecimal.ZERO) <= 0) {
             throw amountNotPositiveException(amount);
         }
-        var account = accountRepository.find(id).orElseThrow(() -> accountNotFoundException(id));
+        var account = findAccount(id);
         synchronized (account) {
+            checkCanDeposit(account);
             doDeposit(account, amount);
+            publish(account);
         }
     }
 
@@ -37,9 +85,11 @@ public final class MoneyService {
         if (amount.compareTo(BigDecimal.ZERO) <= 0) {
             throw amountNotPositiveException(amount);
         }
-        var account = accountRepository.find(id).orElseThrow(() -> accountNotFoundException(id));
+        var account = findAccount(id);
         synchronized (account) {
+            checkCanWithdraw(account);
             doWithdraw(account, amount);
+            publish(account);
         }
     }
 
@@ -51,8 +101,8 @@ public final class MoneyService {
             throw amountNotPositiveException(amount);
         }
 
-        var from = accountRepository.find(idFrom).orElseThrow(() -> accountNotFoundException(idFrom));
-        var to = accountRepository.find(idTo).orElseThrow(() -> accountNotFoundException(idTo));
+        var from = findAccount(idFrom);
+        var to = findAccount(idTo);
 
         // to prevent deadlock
         var first = idFrom < idTo ? from : to;
@@ -60,15 +110,228 @@ public final class MoneyService {
 
         synchronized (first) {
             synchronized (second) {
+                checkCanWithdraw(from);
+                checkCanDeposit(to);
                 doWithdraw(from, amount);
                 // at this point, `doDeposit` is guaranteed to succeed, so no data will be corrupted
                 doDeposit(to, amount);
+                publish(from);
+                publish(to);
             }
         }
     }
 
+    /**
+     * Withdraws money for a cross-node transfer and keeps the account from being archived until
+     * {@link #confirmWithdrawal} or {@link #cancelWithdrawal} is called.
+     */
+    public void reserveWithdrawal(long id, BigDecimal amount) throws MoneyServiceException {
+        if (amount.compareTo(BigDecimal.ZERO) <= 0) {
+            throw amountNotPositiveException(amount);
+        }
+        var account = findAccount(id);
+        synchronized (account) {
+            checkCanWithdraw(account);
+            doWithdraw(account, amount);
+            account.setPendingTransfers(account.getPendingTransfers() + 1);
+            publish(account);
+        }
+    }
+
+    public void confirmWithdrawal(long id) throws MoneyServiceException {
+        var account = findAccount(id);
+        synchronized (account) {
+            account.setPendingTransfers(account.getPendingTransfers() - 1);
+        }
+    }
+
+    /**
+     * Returns reserved money. Succeeds even if the account was frozen or closed after the reservation.
+     */
+    public void cancelWithdrawal(long id, BigDecimal amount) throws MoneyServiceException {
+        var account = findAccount(id);
+        synchronized (account) {
+            doDeposit(account, amount);
+            account.setPendingTransfers(account.getPendingTransfers() - 1);
+            publish(account);
+        }
+    }
+
+    /**
+     * Checks that the account can accept the money of a cross-node transfer and promises that
+     * {@link #commitDeposit} will succeed. The account is kept from being archived until
+     * {@link #commitDeposit} or {@link #cancelDeposit} is called.
+     */
+    public void prepareDeposit(long id, BigDecimal amount) throws MoneyServiceException {
+        if (amount.compareTo(BigDecimal.ZERO) <= 0) {
+            throw amountNotPositiveException(amount);
+        }
+        var account = findAccount(id);
+        synchronized (account) {
+            checkCanDeposit(account);
+            account.setPendingTransfers(account.getPendingTransfers() + 1);
+        }
+    }
+
+    /**
+     * Deposits prepared money. Succeeds even if the account was frozen or closed after the preparation.
+     */
+    public void commitDeposit(long id, BigDecimal amount) throws MoneyServiceException {
+        var account = findAccount(id);
+        synchronized (account) {
+            doDeposit(account, amount);
+            account.setPendingTransfers(account.getPendingTransfers() - 1);
+            publish(account);
+        }
+    }
+
+    public void cancelDeposit(long id) throws MoneyServiceException {
+        var account = findAccount(id);
+        synchronized (account) {
+            account.setPendingTransfers(account.getPendingTransfers() - 1);
+        }
+    }
+
+    public void freeze(long id) throws MoneyServiceException {
+        changeStatus(id, AccountStatus.ACTIVE, AccountStatus.FROZEN);
+    }
+
+    public void unfreeze(long id) throws MoneyServiceException {
+        changeStatus(id, AccountStatus.FROZEN, AccountStatus.ACTIVE);
+    }
+
+    /**
+     * Closes the account. Money can still be withdrawn from a closed account, but nothing can be deposited.
+     * A frozen account can not be closed, otherwise closing would be a way to withdraw from it.
+     */
+    public void close(long id) throws MoneyServiceException {
+        changeStatus(id, AccountStatus.ACTIVE, AccountStatus.CLOSED);
+    }
+
+    /**
+     * Archives the account right away. It stops being writable immediately, and is moved to the cold storage
+     * together with other archived accounts by the next {@link #archiveClosedAccounts}, since moving
+     * accounts one by one would rewrite the whole cold storage for each of them.
+     * Only closed accounts with zero balance and no cross-node transfers in progress can be archived.
+     */
+    public void archive(long id) throws MoneyServiceException {
+        var account = accountRepository.find(id);
+        if (account.isEmpty()) {
+            if (accountRepository.findArchivedVersion(id).isPresent()) {
+                return;
+            }
+            throw accountNotFoundException(id);
+        }
+        synchronized (account.get()) {
+            if (account.get().getStatus() == AccountStatus.ARCHIVED) {
+                return;
+            }
+            if (!isArchivable(account.get())) {
+                throw accountNotArchivableException(account.get());
+            }
+            account.get().setStatus(AccountStatus.ARCHIVED);
+        }
+    }
+
+    /**
+     * Moves all closed accounts with zero balance, as well as accounts archived by {@link #archive},
+     * to the cold storage in one batch. Calls are serialized, so that an account is never moved twice.
+     *
+     * @return number of moved accounts
+     */
+    public synchronized int archiveClosedAccounts() {
+        var archived = new ArrayList<Account>();
+        for (Account account : accountRepository.findAll()) {
+            // unsynchronized check first, since the vast majority of accounts are neither closed nor archived
+            var status = account.getStatus();
+            if (status == AccountStatus.ARCHIVED) {
+                // the status never changes once it is set
+                archived.add(account);
+                continue;
+            }
+            if (status != AccountStatus.CLOSED) {
+                continue;
+            }
+            synchronized (account) {
+                if (isArchivable(account)) {
+                    account.setStatus(AccountStatus.ARCHIVED);
+                    archived.add(account);
+                }
+            }
+        }
+        if (!archived.isEmpty()) {
+            accountRepository.archive(archived);
+            for (Account account : archived) {
+                for (LongConsumer listener : archiveListeners) {
+                    listener.accept(account.getId());
+                }
+            }
+        }
+        return archived.size();
+    }
+
+    private void changeStatus(long id, AccountStatus expected, AccountStatus target) throws MoneyServiceException {
+        var account = findAccount(id);
+        synchronized (account) {
+            var status = account.getStatus();
+            if (status == target) {
+                return;
+            }
+            if (status != expected) {
+                throw status == AccountStatus.FROZEN ? accountFrozenException(id) : accountClosedException(id);
+            }
+            account.setStatus(target);
+        }
+    }
+
+    private Account findAccount(long id) throws MoneyServiceException {
+        var account = accountRepository.find(id);
+        if (account.isPresent()) {
+            return account.get();
+        }
+        if (accountRepository.findArchivedVersion(id).isPresent()) {
+            throw accountClosedException(id);
+        }
+        throw accountNotFoundException(id);
+    }
+
+    // Called under the lock of the account, so that events of the same account are published in order
+    private void publish(Account account) {
+        balanceEvents.publish(account.getId(), account.getBalance());
+    }
+
     private static AccountDto accountToDto(Account account) {
-        return new AccountDto(account.getId(), account.getBalance());
+        return new AccountDto(account.getId(), account.getBalance(), account.getStatus());
+    }
+
+    // Must be called under the lock of the account
+    private static boolean isArchivable(Account account) {
+        return account.getStatus() == AccountStatus.CLOSED
+                && account.getBalance().signum() == 0
+                && account.getPendingTransfers() == 0;
+    }
+
+    // Must be called under the lock of the account
+    private static void checkCanDeposit(Account account) throws MoneyServiceException {
+        switch (account.getStatus()) {
+            case FROZEN:
+                throw accountFrozenException(account.getId());
+            case CLOSED:
+            case ARCHIVED:
+                throw accountClosedException(account.getId());
+            default:
+        }
+    }
+
+    // Must be called under the lock of the account
+    private static void checkCanWithdraw(Account account) throws MoneyServiceException {
+        switch (account.getStatus()) {
+            case FROZEN:
+                throw accountFrozenException(account.getId());
+            case ARCHIVED:
+                throw accountClosedException(account.getId());
+            default:
+        }
     }
 
     private static MoneyServiceException sameAccountException(long id) {
@@ -92,6 +355,36 @@ public final class MoneyService {
         );
     }
 
+    private static MoneyServiceException accountFrozenException(long id) {
+        return new MoneyServiceException(
+                MoneyServiceError.ACCOUNT_FROZEN,
+                String.format("Account %d is frozen", id)
+        );
+    }
+
+    private static MoneyServiceException accountClosedException(long id) {
+        return new MoneyServiceException(
+                MoneyServiceError.ACCOUNT_CLOSED,
+                String.format("Account %d is closed", id)
+        );
+    }
+
+    // Must be called under the lock of the account
+    private static MoneyServiceException accountNotArchivableException(Account account) {
+        String reason;
+        if (account.getStatus() != AccountStatus.CLOSED) {
+            reason = String.format("account %d is %s", account.getId(), account.getStatus());
+        } else if (account.getBalance().signum() != 0) {
+            reason = String.format("account %d has balance %s", account.getId(), account.getBalance());
+        } else {
+            reason = String.format("account %d has cross-node transfers in progress", account.getId());
+        }
+        return new MoneyServiceException(
+                MoneyServiceError.ACCOUNT_NOT_ARCHIVABLE,
+                "Only closed accounts with zero balance and no transfers in progress can be archived, " + reason
+        );
+    }
+
     private static MoneyServiceException insufficientBalanceException(BigDecimal amount, BigDecimal balance) {
         return new MoneyServiceException(
                 MoneyServiceError.INSUFFICIENT_BALANCE,
@@ -4,5 +4,11 @@ public enum MoneyServiceError {
     INSUFFICIENT_BALANCE,
     SAME_ACCOUNT,
     ACCOUNT_NOT_FOUND,
-    AMOUNT_NOT_POSITIVE
+    AMOUNT_NOT_POSITIVE,
+    NODE_UNAVAILABLE,
+    OUTCOME_UNKNOWN,
+    TRANSFER_CONFLICT,
+    ACCOUNT_FROZEN,
+    ACCOUNT_CLOSED,
+    ACCOUNT_NOT_ARCHIVABLE
 }
@@ -0,0 +1,73 @@
+package org.moneytransfer.cluster;
+
+import io.javalin.Javalin;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.moneytransfer.service.MoneyServiceError;
+import org.moneytransfer.service.MoneyServiceException;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public final class ClusterClientTest {
+
+    private static final Duration CALL_TIMEOUT = Duration.ofMillis(100);
+
+    private static Javalin slowNode;
+
+    // node 0 responds slower than the forwarding timeout, nothing listens at node 1
+    private final ClusterClient clusterClient = new ClusterClient(
+            new Cluster(
+                    List.of(URI.create("http://localhost:9301"), URI.create("http://localhost:9302")), 0, "secret"
+            ),
+            CALL_TIMEOUT
+    );
+
+    @BeforeClass
+    public static void beforeAll() {
+        var delay = CALL_TIMEOUT.multipliedBy(10).toMillis();
+        slowNode = Javalin.create().start(9301);
+        slowNode.get("/slow", ctx -> {
+            Thread.sleep(delay);
+            ctx.result("late");
+        }).post("/slow", ctx -> {
+            Thread.sleep(delay);
+            ctx.result("late");
+        });
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        slowNode.stop();
+    }
+
+    private void assertForwardFails(MoneyServiceError expected, int node, String method) {
+        try {
+            clusterClient.forward(node, method, "/slow", Map.of(), "");
+            fail("Expected " + expected);
+        } catch (MoneyServiceException e) {
+            assertEquals(expected, e.getErrorStatus());
+        }
+    }
+
+    @Test
+    public void timedOutPostHasUnknownOutcome() {
+        assertForwardFails(MoneyServiceError.OUTCOME_UNKNOWN, 0, "POST");
+    }
+
+    @Test
+    public void timedOutGetMeansNodeIsUnavailable() {
+        assertForwardFails(MoneyServiceError.NODE_UNAVAILABLE, 0, "GET");
+    }
+
+    @Test
+    public void refusedPostMeansNodeIsUnavailable() {
+        assertForwardFails(MoneyServiceError.NODE_UNAVAILABLE, 1, "POST");
+    }
+}
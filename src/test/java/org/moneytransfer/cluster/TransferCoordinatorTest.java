@@ -0,0 +1,133 @@
+package org.moneytransfer.cluster;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.moneytransfer.repository.AccountRepository;
+import org.moneytransfer.service.MoneyService;
+import org.moneytransfer.service.MoneyServiceError;
+import org.moneytransfer.service.MoneyServiceException;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public final class TransferCoordinatorTest {
+
+    private static final long REMOTE_ACCOUNT = 1;
+
+    private MoneyService moneyService;
+    private FlakyParticipantClient participantClient;
+    private TransferCoordinator coordinator;
+    private long fromId;
+
+    @Before
+    public void setUp() throws Exception {
+        var cluster = new Cluster(
+                List.of(URI.create("http://localhost:1"), URI.create("http://localhost:2")), 0, "secret"
+        );
+        moneyService = new MoneyService(new AccountRepository(cluster.self(), cluster.size()));
+        participantClient = new FlakyParticipantClient();
+        coordinator = new TransferCoordinator(moneyService, cluster, participantClient);
+        fromId = moneyService.createAccount().getId();
+        moneyService.deposit(fromId, BigDecimal.TEN);
+    }
+
+    @Test
+    public void commitIsRetriedUntilAcknowledged() throws Exception {
+        participantClient.failuresBeforeCommit = 2;
+        coordinator.transfer(fromId, REMOTE_ACCOUNT, BigDecimal.ONE);
+        assertEquals(BigDecimal.valueOf(9), moneyService.getAccount(fromId).getBalance());
+        assertEquals(1, coordinator.inDoubtCount());
+
+        coordinator.recover();
+        assertEquals(1, coordinator.inDoubtCount());
+        coordinator.recover();
+        assertEquals(0, coordinator.inDoubtCount());
+        assertEquals(List.of("prepare", "commit"), participantClient.delivered);
+    }
+
+    @Test
+    public void reservationIsReturnedIfPrepareIsInDoubt() throws Exception {
+        participantClient.failPrepare = true;
+        participantClient.failuresBeforeAbort = 1;
+        try {
+            coordinator.transfer(fromId, REMOTE_ACCOUNT, BigDecimal.ONE);
+            fail("Transfer must fail when the remote node is unreachable");
+        } catch (MoneyServiceException e) {
+            assertEquals(MoneyServiceError.NODE_UNAVAILABLE, e.getErrorStatus());
+        }
+        assertEquals(BigDecimal.TEN, moneyService.getAccount(fromId).getBalance());
+        assertEquals(1, coordinator.inDoubtCount());
+
+        coordinator.recover();
+        assertEquals(0, coordinator.inDoubtCount());
+        assertEquals(List.of("abort"), participantClient.delivered);
+    }
+
+    @Test
+    public void reservationIsReturnedIfCommitIsRejected() throws Exception {
+        participantClient.rejectCommit = true;
+        try {
+            coordinator.transfer(fromId, REMOTE_ACCOUNT, BigDecimal.ONE);
+            fail("Transfer must fail when the remote node lost the prepared credit");
+        } catch (MoneyServiceException e) {
+            assertEquals(MoneyServiceError.TRANSFER_CONFLICT, e.getErrorStatus());
+        }
+        assertEquals(BigDecimal.TEN, moneyService.getAccount(fromId).getBalance());
+        assertEquals(0, coordinator.inDoubtCount());
+    }
+
+    @Test
+    public void unknownTransferIsPresumedAborted() throws Exception {
+        assertEquals(TransferDecision.UNKNOWN, coordinator.decisionOf("unknown"));
+
+        participantClient.failuresBeforeCommit = 1;
+        coordinator.transfer(fromId, REMOTE_ACCOUNT, BigDecimal.ONE);
+        var transferId = participantClient.lastTransferId;
+        assertEquals(TransferDecision.COMMIT, coordinator.decisionOf(transferId));
+        coordinator.recover();
+        assertEquals(TransferDecision.UNKNOWN, coordinator.decisionOf(transferId));
+    }
+
+    private static final class FlakyParticipantClient implements ParticipantClient {
+        private final List<String> delivered = new ArrayList<>();
+        private String lastTransferId;
+        private boolean failPrepare;
+        private boolean rejectCommit;
+        private int failuresBeforeCommit;
+        private int failuresBeforeAbort;
+
+        @Override
+        public void prepare(int node, String transferId, long accountId, BigDecimal amount) throws IOException {
+            lastTransferId = transferId;
+            if (failPrepare) {
+                throw new IOException("prepare timed out");
+            }
+            delivered.add("prepare");
+        }
+
+        @Override
+        public void commit(int node, String transferId) throws MoneyServiceException, IOException {
+            if (rejectCommit) {
+                throw new MoneyServiceException(MoneyServiceError.TRANSFER_CONFLICT, "was never prepared");
+            }
+            if (failuresBeforeCommit-- > 0) {
+                throw new IOException("commit timed out");
+            }
+            delivered.add("commit");
+        }
+
+        @Override
+        public void abort(int node, String transferId) throws IOException {
+            if (failuresBeforeAbort-- > 0) {
+                throw new IOException("abort timed out");
+            }
+            delivered.add("abort");
+        }
+    }
+}
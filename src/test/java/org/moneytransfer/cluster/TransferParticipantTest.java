@@ -0,0 +1,116 @@
+package org.moneytransfer.cluster;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.moneytransfer.repository.AccountRepository;
+import org.moneytransfer.service.MoneyService;
+import org.moneytransfer.service.MoneyServiceError;
+import org.moneytransfer.service.MoneyServiceException;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public final class TransferParticipantTest {
+
+    private static final int COORDINATOR = 1;
+
+    private final Map<String, TransferDecision> decisions = new HashMap<>();
+    private MoneyService moneyService;
+    private TransferParticipant participant;
+    private long accountId;
+
+    @Before
+    public void setUp() {
+        moneyService = new MoneyService(new AccountRepository());
+        // the coordinator answers with `decisions`, and knows nothing about other transfers
+        CoordinatorClient coordinatorClient = (node, transferIds) -> {
+            var result = new HashMap<String, TransferDecision>();
+            for (String transferId : transferIds) {
+                result.put(transferId, decisions.getOrDefault(transferId, TransferDecision.UNKNOWN));
+            }
+            return result;
+        };
+        participant = new TransferParticipant(moneyService, coordinatorClient, Duration.ZERO);
+        accountId = moneyService.createAccount().getId();
+    }
+
+    private interface ParticipantFunction {
+        void run() throws MoneyServiceException;
+    }
+
+    private static void assertConflict(ParticipantFunction function) {
+        try {
+            function.run();
+            fail("Expected " + MoneyServiceError.TRANSFER_CONFLICT);
+        } catch (MoneyServiceException e) {
+            assertEquals(MoneyServiceError.TRANSFER_CONFLICT, e.getErrorStatus());
+        }
+    }
+
+    @Test
+    public void retriedCommitIsAppliedOnce() throws Exception {
+        participant.prepare("t", COORDINATOR, accountId, BigDecimal.ONE);
+        participant.commit("t");
+        participant.commit("t");
+        assertEquals(BigDecimal.ONE, moneyService.getAccount(accountId).getBalance());
+    }
+
+    @Test
+    public void commitOfUnknownTransferFails() {
+        assertConflict(() -> participant.commit("t"));
+    }
+
+    @Test
+    public void prepareDelayedPastAbortIsRejected() throws Exception {
+        participant.abort("t", COORDINATOR);
+        assertConflict(() -> participant.prepare("t", COORDINATOR, accountId, BigDecimal.ONE));
+        assertConflict(() -> participant.commit("t"));
+
+        // the rejected prepare must not keep the account from being archived
+        moneyService.close(accountId);
+        assertEquals(1, moneyService.archiveClosedAccounts());
+    }
+
+    @Test
+    public void preparedTransferIsAbortedIfCoordinatorKnowsNothingAboutIt() throws Exception {
+        participant.prepare("t", COORDINATOR, accountId, BigDecimal.ONE);
+        participant.resolve();
+        assertConflict(() -> participant.commit("t"));
+
+        moneyService.close(accountId);
+        assertEquals("Aborted credit must not keep the account from being archived",
+                1, moneyService.archiveClosedAccounts());
+    }
+
+    @Test
+    public void preparedTransferIsCommittedIfCoordinatorSaysSo() throws Exception {
+        participant.prepare("t", COORDINATOR, accountId, BigDecimal.ONE);
+        decisions.put("t", TransferDecision.UNDECIDED);
+        participant.resolve();
+        assertEquals(BigDecimal.ZERO, moneyService.getAccount(accountId).getBalance());
+
+        decisions.put("t", TransferDecision.COMMIT);
+        participant.resolve();
+        assertEquals(BigDecimal.ONE, moneyService.getAccount(accountId).getBalance());
+    }
+
+    @Test
+    public void tombstoneIsKeptUntilCoordinatorForgetsTransfer() throws Exception {
+        participant.prepare("t", COORDINATOR, accountId, BigDecimal.ONE);
+        participant.commit("t");
+        decisions.put("t", TransferDecision.COMMIT);
+        participant.resolve();
+        participant.commit("t");
+        assertEquals(1, participant.size());
+
+        decisions.remove("t");
+        participant.resolve();
+        assertEquals(0, participant.size());
+        assertEquals(BigDecimal.ONE, moneyService.getAccount(accountId).getBalance());
+    }
+}
@@ -0,0 +1,74 @@
+package org.moneytransfer.rest;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.moneytransfer.repository.AccountRepository;
+import org.moneytransfer.service.MoneyService;
+
+import java.math.BigDecimal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public final class AccountResponseCacheTest {
+
+    private static final int CAPACITY = 4;
+
+    private MoneyService moneyService;
+    private AccountResponseCache cache;
+
+    @Before
+    public void setUp() {
+        moneyService = new MoneyService(new AccountRepository());
+        cache = new AccountResponseCache(moneyService, CAPACITY);
+        moneyService.addArchiveListener(cache::evict);
+    }
+
+    @Test
+    public void responseIsReusedUntilAccountChanges() throws Exception {
+        var id = moneyService.createAccount().getId();
+        var response = cache.get(id);
+        assertSame(response, cache.get(id));
+        moneyService.deposit(id, BigDecimal.ONE);
+        var changed = cache.get(id);
+        assertSame(changed, cache.get(id));
+        assertNotEquals(response.etag(), changed.etag());
+    }
+
+    @Test
+    public void etagOfArchivedAccountMatchesWithoutCaching() throws Exception {
+        var id = moneyService.createAccount().getId();
+        moneyService.close(id);
+        moneyService.archiveClosedAccounts();
+        var etag = cache.etag(id);
+        assertEquals(etag, cache.get(id).etag());
+        assertTrue(AccountResponseCache.matches(etag, "W/\"other\", " + etag));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void sizeIsBoundedByCapacity() throws Exception {
+        var hotId = moneyService.createAccount().getId();
+        for (int i = 0; i < CAPACITY * 10; i++) {
+            cache.get(moneyService.createAccount().getId());
+            cache.get(hotId);
+            assertTrue(cache.size() <= CAPACITY);
+        }
+    }
+
+    @Test
+    public void responsesOfArchivedAccountsAreEvicted() throws Exception {
+        var id = moneyService.createAccount().getId();
+        cache.get(id);
+        moneyService.close(id);
+        cache.get(id);
+        assertEquals(1, cache.size());
+
+        moneyService.archiveClosedAccounts();
+        assertEquals(0, cache.size());
+        cache.get(id);
+        assertEquals("Archived accounts must not be cached", 0, cache.size());
+    }
+}
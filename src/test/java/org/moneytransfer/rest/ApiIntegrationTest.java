@@ -4,7 +4,9 @@ import io.javalin.plugin.json.JavalinJson;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.Test;
+import org.moneytransfer.repository.AccountStatus;
 import org.moneytransfer.service.AccountDto;
+import org.moneytransfer.service.BalanceEvent;
 import org.moneytransfer.service.MoneyServiceError;
 
 import java.math.BigDecimal;
@@ -12,24 +14,28 @@ import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.util.Iterator;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNull;
 
 public final class ApiIntegrationTest {
 
     private static URI SERVER_URI = URI.create("http://localhost:9001");
 
+    private static App app;
+
     private HttpClient httpClient = HttpClient.newBuilder().build();
 
     @BeforeClass
     public static void beforeAll() {
-        App.start(9001);
+        app = App.start(9001);
     }
 
     @AfterClass
     public static void tearDown() {
-        App.stop();
+        app.stop();
     }
 
     private HttpResponse<String> createAccount() throws Exception {
@@ -46,6 +52,14 @@ public final class ApiIntegrationTest {
         return httpClient.send(request, HttpResponse.BodyHandlers.ofString());
     }
 
+    private HttpResponse<String> getAccountIfNoneMatch(long id, String etag) throws Exception {
+        var request = HttpRequest.newBuilder(SERVER_URI.resolve("/accounts/" + id))
+                .header("If-None-Match", etag)
+                .GET()
+                .build();
+        return httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
     private HttpResponse<String> deposit(long id, BigDecimal amount) throws Exception {
         var body = JavalinJson.toJson(new MoneyOperationRequest(amount));
         var request = HttpRequest.newBuilder(SERVER_URI.resolve("/accounts/" + id + "/deposit"))
@@ -70,6 +84,25 @@ public final class ApiIntegrationTest {
         return httpClient.send(request, HttpResponse.BodyHandlers.ofString());
     }
 
+    private HttpResponse<String> post(long id, String operation) throws Exception {
+        var request = HttpRequest.newBuilder(SERVER_URI.resolve("/accounts/" + id + "/" + operation))
+                .POST(HttpRequest.BodyPublishers.noBody())
+                .build();
+        return httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static String nextEventData(Iterator<String> lines, String event) {
+        var found = false;
+        while (true) {
+            var line = lines.next();
+            if (line.equals("event: " + event)) {
+                found = true;
+            } else if (found && line.startsWith("data: ")) {
+                return line.substring("data: ".length());
+            }
+        }
+    }
+
     private AccountDto doGetAccount(long id) throws Exception {
         var getAccountResponse = getAccount(id);
         return JavalinJson.fromJson(getAccountResponse.body(), AccountInfoResponse.class).getAccount();
@@ -89,6 +122,7 @@ public final class ApiIntegrationTest {
         assertNull(result.getDescription());
         var account = result.getAccount();
         assertEquals(BigDecimal.ZERO, account.getBalance());
+        assertEquals(AccountStatus.ACTIVE, account.getStatus());
     }
 
     @Test
@@ -113,6 +147,23 @@ public final class ApiIntegrationTest {
         assertEquals(MoneyServiceError.ACCOUNT_NOT_FOUND, result.getError());
     }
 
+    @Test
+    public void getAccountReturnsNotModifiedUntilAccountChanges() throws Exception {
+        var accountId = doCreateAccount().getId();
+        var etag = getAccount(accountId).headers().firstValue("ETag").orElseThrow();
+
+        var notModifiedResponse = getAccountIfNoneMatch(accountId, etag);
+        assertEquals(304, notModifiedResponse.statusCode());
+        assertEquals("", notModifiedResponse.body());
+
+        deposit(accountId, BigDecimal.TEN);
+        var modifiedResponse = getAccountIfNoneMatch(accountId, etag);
+        assertEquals(200, modifiedResponse.statusCode());
+        assertNotEquals(etag, modifiedResponse.headers().firstValue("ETag").orElseThrow());
+        var result = JavalinJson.fromJson(modifiedResponse.body(), AccountInfoResponse.class);
+        assertEquals(BigDecimal.TEN, result.getAccount().getBalance());
+    }
+
     @Test
     public void depositSucceeds() throws Exception {
         var accountId = doCreateAccount().getId();
@@ -247,4 +298,64 @@ public final class ApiIntegrationTest {
         assertEquals("State must be unchanged", BigDecimal.ZERO, doGetAccount(fromId).getBalance());
         assertEquals("State must be unchanged", BigDecimal.ZERO, doGetAccount(toId).getBalance());
     }
+
+    @Test
+    public void internalRoutesAreNotServedBySingleNode() throws Exception {
+        var accountId = doCreateAccount().getId();
+        var body = JavalinJson.toJson(new MoneyOperationRequest(BigDecimal.TEN));
+        var request = HttpRequest.newBuilder(SERVER_URI.resolve("/internal/transfers/t/prepare/" + accountId))
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        assertEquals(404, httpClient.send(request, HttpResponse.BodyHandlers.ofString()).statusCode());
+    }
+
+    @Test
+    public void frozenAccountRejectsDeposit() throws Exception {
+        var accountId = doCreateAccount().getId();
+        assertEquals(200, post(accountId, "freeze").statusCode());
+        assertEquals(AccountStatus.FROZEN, doGetAccount(accountId).getStatus());
+        var depositResponse = deposit(accountId, BigDecimal.ONE);
+        assertEquals(409, depositResponse.statusCode());
+        var result = JavalinJson.fromJson(depositResponse.body(), MoneyOperationResponse.class);
+        assertEquals(MoneyServiceError.ACCOUNT_FROZEN, result.getError());
+
+        assertEquals(200, post(accountId, "unfreeze").statusCode());
+        assertEquals(200, deposit(accountId, BigDecimal.ONE).statusCode());
+    }
+
+    @Test
+    public void archivedAccountRemainsReadable() throws Exception {
+        var accountId = doCreateAccount().getId();
+        assertEquals(409, post(accountId, "archive").statusCode());
+        assertEquals(200, post(accountId, "close").statusCode());
+        assertEquals(200, post(accountId, "archive").statusCode());
+
+        var account = doGetAccount(accountId);
+        assertEquals(AccountStatus.ARCHIVED, account.getStatus());
+        var etag = getAccount(accountId).headers().firstValue("ETag").orElseThrow();
+        assertEquals(304, getAccountIfNoneMatch(accountId, etag).statusCode());
+        assertEquals(BigDecimal.ZERO, account.getBalance());
+        var depositResponse = deposit(accountId, BigDecimal.ONE);
+        assertEquals(409, depositResponse.statusCode());
+        var result = JavalinJson.fromJson(depositResponse.body(), MoneyOperationResponse.class);
+        assertEquals(MoneyServiceError.ACCOUNT_CLOSED, result.getError());
+    }
+
+    @Test(timeout = 10_000)
+    public void balanceChangesAreStreamed() throws Exception {
+        var accountId = doCreateAccount().getId();
+        var request = HttpRequest.newBuilder(SERVER_URI.resolve("/events/balances?accounts=" + accountId))
+                .header("Accept", "text/event-stream")
+                .GET()
+                .build();
+        var response = httpClient.send(request, HttpResponse.BodyHandlers.ofLines());
+        assertEquals(200, response.statusCode());
+        var lines = response.body().iterator();
+        // changes made after the `subscribed` event are guaranteed to be streamed
+        nextEventData(lines, "subscribed");
+        deposit(accountId, BigDecimal.TEN);
+        var event = JavalinJson.fromJson(nextEventData(lines, "balance"), BalanceEvent.class);
+        assertEquals(accountId, event.getAccountId());
+        assertEquals(BigDecimal.TEN, event.getBalance());
+    }
 }
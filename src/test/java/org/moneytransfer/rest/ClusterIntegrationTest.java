@@ -0,0 +1,172 @@
+package org.moneytransfer.rest;
+
+import io.javalin.plugin.json.JavalinJson;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.moneytransfer.cluster.ClusterClient;
+import org.moneytransfer.cluster.TransferDecision;
+import org.moneytransfer.service.AccountDto;
+import org.moneytransfer.service.MoneyServiceError;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public final class ClusterIntegrationTest {
+
+    private static LocalCluster cluster;
+
+    private HttpClient httpClient = HttpClient.newBuilder().build();
+
+    @BeforeClass
+    public static void beforeAll() {
+        cluster = new LocalCluster(3, 9101);
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        cluster.close();
+    }
+
+    private HttpResponse<String> post(URI node, String path, BigDecimal amount) throws Exception {
+        var body = amount == null
+                ? HttpRequest.BodyPublishers.noBody()
+                : HttpRequest.BodyPublishers.ofString(JavalinJson.toJson(new MoneyOperationRequest(amount)));
+        var request = HttpRequest.newBuilder(node.resolve(path)).POST(body).build();
+        return httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpResponse<String> get(URI node, String path) throws Exception {
+        var request = HttpRequest.newBuilder(node.resolve(path)).GET().build();
+        return httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private AccountDto doCreateAccount(int node) throws Exception {
+        var response = post(cluster.uri(node), "/accounts", null);
+        return JavalinJson.fromJson(response.body(), AccountInfoResponse.class).getAccount();
+    }
+
+    private BigDecimal doGetBalance(int node, long id) throws Exception {
+        var response = get(cluster.uri(node), "/accounts/" + id);
+        return JavalinJson.fromJson(response.body(), AccountInfoResponse.class).getAccount().getBalance();
+    }
+
+    @Test
+    public void nodesAllocateIdsFromTheirOwnPartitions() throws Exception {
+        for (int node = 0; node < cluster.size(); node++) {
+            assertEquals(node, Math.floorMod(doCreateAccount(node).getId(), cluster.size()));
+        }
+    }
+
+    @Test
+    public void requestsAreRoutedToOwner() throws Exception {
+        var accountId = doCreateAccount(0).getId();
+        var depositResponse = post(cluster.uri(1), "/accounts/" + accountId + "/deposit", BigDecimal.TEN);
+        assertEquals(200, depositResponse.statusCode());
+        for (int node = 0; node < cluster.size(); node++) {
+            assertEquals(BigDecimal.TEN, doGetBalance(node, accountId));
+        }
+    }
+
+    @Test
+    public void conditionalRequestsAreRoutedToOwner() throws Exception {
+        var accountId = doCreateAccount(0).getId();
+        var etag = get(cluster.uri(0), "/accounts/" + accountId).headers().firstValue("ETag").orElseThrow();
+        var request = HttpRequest.newBuilder(cluster.uri(1).resolve("/accounts/" + accountId))
+                .header("If-None-Match", etag)
+                .GET()
+                .build();
+        var response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        assertEquals(304, response.statusCode());
+        assertEquals(etag, response.headers().firstValue("ETag").orElseThrow());
+    }
+
+    @Test(timeout = 10_000)
+    public void subscriptionToRemoteAccountIsRejected() throws Exception {
+        var accountId = doCreateAccount(1).getId();
+        var request = HttpRequest.newBuilder(cluster.uri(0).resolve("/events/balances?accounts=" + accountId))
+                .header("Accept", "text/event-stream")
+                .GET()
+                .build();
+        var response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        assertTrue(response.body(), response.body().contains("event: error"));
+        assertTrue(response.body(), response.body().contains(cluster.uri(1).toString()));
+    }
+
+    @Test
+    public void internalRoutesRequireClusterSecret() throws Exception {
+        var accountId = doCreateAccount(1).getId();
+        var prepareResponse = post(cluster.uri(1), "/internal/transfers/t/prepare/" + accountId, BigDecimal.TEN);
+        assertEquals(401, prepareResponse.statusCode());
+        var commitResponse = post(cluster.uri(1), "/internal/transfers/t/commit", null);
+        assertEquals(401, commitResponse.statusCode());
+        assertEquals("State must be unchanged", BigDecimal.ZERO, doGetBalance(1, accountId));
+    }
+
+    @Test
+    public void unknownTransferIsPresumedAborted() throws Exception {
+        var clusterClient = new ClusterClient(cluster.cluster(1));
+        var decisions = clusterClient.decisions(0, List.of("unknown"));
+        assertEquals(Map.of("unknown", TransferDecision.UNKNOWN), decisions);
+    }
+
+    @Test
+    public void crossNodeTransferSucceeds() throws Exception {
+        var fromId = doCreateAccount(0).getId();
+        var toId = doCreateAccount(1).getId();
+        post(cluster.uri(0), "/accounts/" + fromId + "/deposit", BigDecimal.TEN);
+        // sent to a node which owns neither of the accounts
+        var transferResponse = post(cluster.uri(2), "/transfers/" + fromId + "/" + toId, BigDecimal.ONE);
+        assertEquals(200, transferResponse.statusCode());
+        assertEquals(BigDecimal.valueOf(9), doGetBalance(2, fromId));
+        assertEquals(BigDecimal.ONE, doGetBalance(2, toId));
+    }
+
+    @Test
+    public void crossNodeTransferFailsIfBalanceIsInsufficient() throws Exception {
+        var fromId = doCreateAccount(0).getId();
+        var toId = doCreateAccount(1).getId();
+        var transferResponse = post(cluster.uri(0), "/transfers/" + fromId + "/" + toId, BigDecimal.ONE);
+        assertEquals(403, transferResponse.statusCode());
+        var result = JavalinJson.fromJson(transferResponse.body(), MoneyOperationResponse.class);
+        assertEquals(MoneyServiceError.INSUFFICIENT_BALANCE, result.getError());
+        assertEquals("State must be unchanged", BigDecimal.ZERO, doGetBalance(0, fromId));
+        assertEquals("State must be unchanged", BigDecimal.ZERO, doGetBalance(1, toId));
+    }
+
+    @Test
+    public void crossNodeTransferIsRolledBackIfDestinationIsFrozen() throws Exception {
+        var fromId = doCreateAccount(0).getId();
+        var toId = doCreateAccount(1).getId();
+        post(cluster.uri(0), "/accounts/" + fromId + "/deposit", BigDecimal.TEN);
+        post(cluster.uri(0), "/accounts/" + toId + "/freeze", null);
+        var transferResponse = post(cluster.uri(0), "/transfers/" + fromId + "/" + toId, BigDecimal.ONE);
+        assertEquals(409, transferResponse.statusCode());
+        var result = JavalinJson.fromJson(transferResponse.body(), MoneyOperationResponse.class);
+        assertEquals(MoneyServiceError.ACCOUNT_FROZEN, result.getError());
+        assertEquals("Reservation must be returned", BigDecimal.TEN, doGetBalance(0, fromId));
+        assertEquals("State must be unchanged", BigDecimal.ZERO, doGetBalance(1, toId));
+    }
+
+    @Test
+    public void crossNodeTransferIsRolledBackIfDestinationIsUnknown() throws Exception {
+        var fromId = doCreateAccount(0).getId();
+        var unknownId = Long.MAX_VALUE;
+        assertNotEquals("Destination must be remote", 0, Math.floorMod(unknownId, cluster.size()));
+        post(cluster.uri(0), "/accounts/" + fromId + "/deposit", BigDecimal.TEN);
+        var transferResponse = post(cluster.uri(0), "/transfers/" + fromId + "/" + unknownId, BigDecimal.ONE);
+        assertEquals(404, transferResponse.statusCode());
+        var result = JavalinJson.fromJson(transferResponse.body(), MoneyOperationResponse.class);
+        assertEquals(MoneyServiceError.ACCOUNT_NOT_FOUND, result.getError());
+        assertEquals("Reservation must be returned", BigDecimal.TEN, doGetBalance(0, fromId));
+    }
+}
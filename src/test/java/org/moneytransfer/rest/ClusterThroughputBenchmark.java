@@ -0,0 +1,112 @@
+package org.moneytransfer.rest;
+
+import io.javalin.plugin.json.JavalinJson;
+
+import java.math.BigDecimal;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measures throughput of random transfers for clusters of 1, 2, ... `maxNodes` nodes running in this JVM.
+ * Transfers which do not succeed are counted as failed, a healthy cluster has none.
+ * Not a test, run it with
+ * `mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass="org.moneytransfer.rest.ClusterThroughputBenchmark"`.
+ * Optional arguments: `maxNodes` (default 4), `accountsPerNode` (default 100), `requests` (default 20000).
+ */
+public final class ClusterThroughputBenchmark {
+
+    private static final int BASE_PORT = 9201;
+    private static final int CLIENT_THREADS = 16;
+
+    public static void main(String[] args) throws Exception {
+        var maxNodes = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        var accountsPerNode = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        var requests = args.length > 2 ? Integer.parseInt(args[2]) : 20000;
+        var httpClient = HttpClient.newBuilder().build();
+        var executor = Executors.newFixedThreadPool(CLIENT_THREADS);
+        try {
+            for (int nodes = 1; nodes <= maxNodes; nodes++) {
+                try (var cluster = new LocalCluster(nodes, BASE_PORT + 10 * nodes)) {
+                    var accounts = createAccounts(httpClient, cluster, accountsPerNode);
+                    var failures = new AtomicInteger();
+                    var elapsedNanos = runTransfers(httpClient, executor, cluster, accounts, requests, failures);
+                    System.out.printf("nodes=%d requests=%d time=%dms throughput=%.0f req/s failed=%d%n",
+                            nodes, requests, elapsedNanos / 1_000_000, requests * 1e9 / elapsedNanos,
+                            failures.get());
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static List<Long> createAccounts(HttpClient httpClient, LocalCluster cluster, int accountsPerNode)
+            throws Exception {
+        var accounts = new ArrayList<Long>();
+        for (int node = 0; node < cluster.size(); node++) {
+            for (int i = 0; i < accountsPerNode; i++) {
+                var create = HttpRequest.newBuilder(cluster.uri(node).resolve("/accounts"))
+                        .POST(HttpRequest.BodyPublishers.noBody())
+                        .build();
+                var response = httpClient.send(create, HttpResponse.BodyHandlers.ofString());
+                if (response.statusCode() != 201) {
+                    throw new IllegalStateException("Could not create account: " + response.body());
+                }
+                var id = JavalinJson.fromJson(response.body(), AccountInfoResponse.class).getAccount().getId();
+                var deposited = send(
+                        httpClient, cluster, node, "/accounts/" + id + "/deposit", BigDecimal.valueOf(1_000_000)
+                );
+                if (!deposited) {
+                    throw new IllegalStateException("Could not deposit to account " + id);
+                }
+                accounts.add(id);
+            }
+        }
+        return accounts;
+    }
+
+    private static long runTransfers(HttpClient httpClient, ExecutorService executor, LocalCluster cluster,
+                                     List<Long> accounts, int requests, AtomicInteger failures) throws Exception {
+        var futures = new ArrayList<Future<?>>(requests);
+        var start = System.nanoTime();
+        for (int i = 0; i < requests; i++) {
+            futures.add(executor.submit(() -> {
+                var random = ThreadLocalRandom.current();
+                var fromIndex = random.nextInt(accounts.size());
+                var toIndex = (fromIndex + 1 + random.nextInt(accounts.size() - 1)) % accounts.size();
+                var from = accounts.get(fromIndex);
+                var to = accounts.get(toIndex);
+                // clients spread requests evenly over the nodes, which route them to the owners
+                var node = random.nextInt(cluster.size());
+                if (!send(httpClient, cluster, node, "/transfers/" + from + "/" + to, BigDecimal.ONE)) {
+                    failures.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * @return whether the request succeeded
+     */
+    private static boolean send(HttpClient httpClient, LocalCluster cluster, int node, String path,
+                                BigDecimal amount) throws Exception {
+        var body = JavalinJson.toJson(new MoneyOperationRequest(amount));
+        var request = HttpRequest.newBuilder(cluster.uri(node).resolve(path))
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        return httpClient.send(request, HttpResponse.BodyHandlers.ofString()).statusCode() == 200;
+    }
+}
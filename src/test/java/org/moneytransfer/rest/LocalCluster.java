@@ -0,0 +1,50 @@
+package org.moneytransfer.rest;
+
+import org.moneytransfer.cluster.Cluster;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Runs several nodes of a cluster inside the current JVM, on consecutive ports starting from `basePort`.
+ */
+final class LocalCluster implements AutoCloseable {
+    private final List<URI> nodes = new ArrayList<>();
+    private final List<Cluster> clusters = new ArrayList<>();
+    private final List<App> apps = new ArrayList<>();
+
+    LocalCluster(int size, int basePort) {
+        for (int i = 0; i < size; i++) {
+            nodes.add(URI.create("http://localhost:" + (basePort + i)));
+        }
+        var secret = UUID.randomUUID().toString();
+        for (int i = 0; i < size; i++) {
+            clusters.add(new Cluster(nodes, i, secret));
+            apps.add(App.start(basePort + i, clusters.get(i)));
+        }
+    }
+
+    int size() {
+        return nodes.size();
+    }
+
+    URI uri(int node) {
+        return nodes.get(node);
+    }
+
+    /**
+     * @return cluster as seen by the node, e.g. to call other nodes on its behalf
+     */
+    Cluster cluster(int node) {
+        return clusters.get(node);
+    }
+
+    @Override
+    public void close() {
+        for (App app : apps) {
+            app.stop();
+        }
+    }
+}
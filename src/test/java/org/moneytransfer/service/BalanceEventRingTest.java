@@ -0,0 +1,83 @@
+package org.moneytransfer.service;
+
+import org.junit.Test;
+import org.moneytransfer.repository.AccountRepository;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+
+import static org.junit.Assert.assertEquals;
+
+public final class BalanceEventRingTest {
+
+    @Test
+    public void eventsAreReadInOrder() {
+        var ring = new BalanceEventRing(4);
+        ring.publish(1, BigDecimal.ONE);
+        ring.publish(2, BigDecimal.TEN);
+        var events = new ArrayList<BalanceEvent>();
+        assertEquals(2, ring.read(0, 10, events::add));
+        assertEquals(2, events.size());
+        assertEquals(0, events.get(0).getSequence());
+        assertEquals(1, events.get(0).getAccountId());
+        assertEquals(1, events.get(1).getSequence());
+        assertEquals(BigDecimal.TEN, events.get(1).getBalance());
+    }
+
+    @Test
+    public void readStopsAtUnpublishedEventOrAtLimit() {
+        var ring = new BalanceEventRing(4);
+        ring.publish(1, BigDecimal.ONE);
+        ring.publish(1, BigDecimal.TEN);
+        var events = new ArrayList<BalanceEvent>();
+        assertEquals(1, ring.read(0, 1, events::add));
+        assertEquals(2, ring.read(1, 10, events::add));
+        assertEquals(2, ring.read(2, 10, events::add));
+        assertEquals(2, events.size());
+    }
+
+    @Test
+    public void slowReaderFindsOutAboutOverwrittenEvents() {
+        var ring = new BalanceEventRing(4);
+        for (int i = 0; i < 5; i++) {
+            ring.publish(i, BigDecimal.valueOf(i));
+        }
+        var events = new ArrayList<BalanceEvent>();
+        assertEquals(-1, ring.read(0, 10, events::add));
+        assertEquals(0, events.size());
+        assertEquals(5, ring.read(1, 10, events::add));
+        assertEquals(4, events.size());
+    }
+
+    @Test
+    public void publisherDelayedByLapDoesNotOverwriteNewerEvent() {
+        var ring = new BalanceEventRing(4);
+        for (int i = 0; i < 5; i++) {
+            ring.publish(i, BigDecimal.valueOf(i));
+        }
+        // event 0 is stored only after event 4 took its slot
+        ring.store(new BalanceEvent(0, 0, BigDecimal.ZERO));
+        var events = new ArrayList<BalanceEvent>();
+        assertEquals(5, ring.read(4, 10, events::add));
+        assertEquals(1, events.size());
+        assertEquals(4, events.get(0).getSequence());
+        assertEquals(-1, ring.read(0, 10, events::add));
+    }
+
+    @Test
+    public void moneyServicePublishesEveryChange() throws Exception {
+        var ring = new BalanceEventRing(16);
+        var moneyService = new MoneyService(new AccountRepository(), ring);
+        var fromId = moneyService.createAccount().getId();
+        var toId = moneyService.createAccount().getId();
+        moneyService.deposit(fromId, BigDecimal.TEN);
+        moneyService.withdraw(fromId, BigDecimal.ONE);
+        moneyService.transfer(fromId, toId, BigDecimal.ONE);
+        var events = new ArrayList<BalanceEvent>();
+        assertEquals(6, ring.read(0, 16, events::add));
+        assertEquals(BigDecimal.valueOf(8), events.get(4).getBalance());
+        assertEquals(fromId, events.get(4).getAccountId());
+        assertEquals(BigDecimal.ONE, events.get(5).getBalance());
+        assertEquals(toId, events.get(5).getAccountId());
+    }
+}
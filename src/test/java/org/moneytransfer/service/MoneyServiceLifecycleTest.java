@@ -0,0 +1,171 @@
+package org.moneytransfer.service;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.moneytransfer.repository.AccountRepository;
+import org.moneytransfer.repository.AccountStatus;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public final class MoneyServiceLifecycleTest {
+
+    private AccountRepository accountRepository;
+    private MoneyService moneyService;
+
+    @Before
+    public void setUp() {
+        accountRepository = new AccountRepository();
+        moneyService = new MoneyService(accountRepository);
+    }
+
+    private interface MoneyServiceFunction {
+        void run() throws MoneyServiceException;
+    }
+
+    private static void assertFails(MoneyServiceError expected, MoneyServiceFunction function) {
+        try {
+            function.run();
+            fail("Expected " + expected);
+        } catch (MoneyServiceException e) {
+            assertEquals(expected, e.getErrorStatus());
+        }
+    }
+
+    @Test
+    public void frozenAccountRejectsBalanceChangesUntilUnfrozen() throws Exception {
+        var id = moneyService.createAccount().getId();
+        var otherId = moneyService.createAccount().getId();
+        moneyService.deposit(id, BigDecimal.TEN);
+        moneyService.freeze(id);
+        assertEquals(AccountStatus.FROZEN, moneyService.getAccount(id).getStatus());
+
+        assertFails(MoneyServiceError.ACCOUNT_FROZEN, () -> moneyService.deposit(id, BigDecimal.ONE));
+        assertFails(MoneyServiceError.ACCOUNT_FROZEN, () -> moneyService.withdraw(id, BigDecimal.ONE));
+        assertFails(MoneyServiceError.ACCOUNT_FROZEN, () -> moneyService.transfer(id, otherId, BigDecimal.ONE));
+        assertFails(MoneyServiceError.ACCOUNT_FROZEN, () -> moneyService.transfer(otherId, id, BigDecimal.ONE));
+
+        moneyService.unfreeze(id);
+        moneyService.withdraw(id, BigDecimal.ONE);
+        assertEquals(BigDecimal.valueOf(9), moneyService.getAccount(id).getBalance());
+    }
+
+    @Test
+    public void frozenAccountCanNotBeClosedAndDrained() throws Exception {
+        var id = moneyService.createAccount().getId();
+        moneyService.deposit(id, BigDecimal.TEN);
+        moneyService.freeze(id);
+
+        assertFails(MoneyServiceError.ACCOUNT_FROZEN, () -> moneyService.close(id));
+        assertFails(MoneyServiceError.ACCOUNT_FROZEN, () -> moneyService.withdraw(id, BigDecimal.TEN));
+        assertEquals(AccountStatus.FROZEN, moneyService.getAccount(id).getStatus());
+        assertEquals(BigDecimal.TEN, moneyService.getAccount(id).getBalance());
+    }
+
+    @Test
+    public void closedAccountCanOnlyBeDrained() throws Exception {
+        var id = moneyService.createAccount().getId();
+        var otherId = moneyService.createAccount().getId();
+        moneyService.deposit(id, BigDecimal.TEN);
+        moneyService.close(id);
+
+        assertFails(MoneyServiceError.ACCOUNT_CLOSED, () -> moneyService.deposit(id, BigDecimal.ONE));
+        assertFails(MoneyServiceError.ACCOUNT_CLOSED, () -> moneyService.transfer(otherId, id, BigDecimal.ONE));
+        assertFails(MoneyServiceError.ACCOUNT_CLOSED, () -> moneyService.freeze(id));
+        assertFails(MoneyServiceError.ACCOUNT_NOT_ARCHIVABLE, () -> moneyService.archive(id));
+
+        moneyService.transfer(id, otherId, BigDecimal.TEN);
+        assertEquals(BigDecimal.TEN, moneyService.getAccount(otherId).getBalance());
+    }
+
+    @Test
+    public void compactionArchivesOnlyClosedAccountsWithZeroBalance() throws Exception {
+        var closedIds = new long[5];
+        for (int i = 0; i < closedIds.length; i++) {
+            closedIds[i] = moneyService.createAccount().getId();
+        }
+        var activeId = moneyService.createAccount().getId();
+        var notEmptyId = moneyService.createAccount().getId();
+        moneyService.deposit(notEmptyId, BigDecimal.ONE);
+        moneyService.close(notEmptyId);
+        // closed in reverse order, the archive must not depend on it
+        for (int i = closedIds.length - 1; i >= 0; i--) {
+            moneyService.close(closedIds[i]);
+        }
+
+        assertEquals(closedIds.length, moneyService.archiveClosedAccounts());
+        assertEquals(0, moneyService.archiveClosedAccounts());
+        assertEquals(closedIds.length, accountRepository.archivedCount());
+
+        for (long id : closedIds) {
+            assertEquals(AccountStatus.ARCHIVED, moneyService.getAccount(id).getStatus());
+            assertEquals(BigDecimal.ZERO, moneyService.getAccount(id).getBalance());
+            assertFails(MoneyServiceError.ACCOUNT_CLOSED, () -> moneyService.deposit(id, BigDecimal.ONE));
+        }
+        assertEquals(AccountStatus.ACTIVE, moneyService.getAccount(activeId).getStatus());
+        assertEquals(AccountStatus.CLOSED, moneyService.getAccount(notEmptyId).getStatus());
+    }
+
+    @Test
+    public void explicitlyArchivedAccountIsMovedByCompaction() throws Exception {
+        var id = moneyService.createAccount().getId();
+        moneyService.close(id);
+        moneyService.archive(id);
+        assertEquals(AccountStatus.ARCHIVED, moneyService.getAccount(id).getStatus());
+        assertFails(MoneyServiceError.ACCOUNT_CLOSED, () -> moneyService.withdraw(id, BigDecimal.ONE));
+        assertEquals(0, accountRepository.archivedCount());
+
+        assertEquals(1, moneyService.archiveClosedAccounts());
+        assertEquals(1, accountRepository.archivedCount());
+        assertEquals(AccountStatus.ARCHIVED, moneyService.getAccount(id).getStatus());
+    }
+
+    @Test
+    public void accountMovedTwiceIsArchivedOnce() throws Exception {
+        var id = moneyService.createAccount().getId();
+        moneyService.close(id);
+        moneyService.archive(id);
+        var account = accountRepository.find(id).orElseThrow();
+        // as if two compactions collected the account at the same time
+        accountRepository.archive(List.of(account));
+        accountRepository.archive(List.of(account));
+        assertEquals(1, accountRepository.archivedCount());
+        assertEquals(account.getVersion(), accountRepository.findArchivedVersion(id).orElseThrow());
+    }
+
+    @Test
+    public void versionChangesWhenAccountIsArchived() throws Exception {
+        var id = moneyService.createAccount().getId();
+        moneyService.close(id);
+        var closedVersion = moneyService.getAccountVersion(id);
+        moneyService.archive(id);
+        var archivedVersion = moneyService.getAccountVersion(id);
+        assertNotEquals(closedVersion, archivedVersion);
+        moneyService.archive(id);
+        assertEquals(archivedVersion, moneyService.getAccountVersion(id));
+    }
+
+    @Test
+    public void accountWithPendingTransferIsNotArchived() throws Exception {
+        var id = moneyService.createAccount().getId();
+        moneyService.prepareDeposit(id, BigDecimal.ONE);
+        moneyService.close(id);
+        assertEquals(0, moneyService.archiveClosedAccounts());
+        try {
+            moneyService.archive(id);
+            fail("Account with a transfer in progress must not be archived");
+        } catch (MoneyServiceException e) {
+            assertEquals(MoneyServiceError.ACCOUNT_NOT_ARCHIVABLE, e.getErrorStatus());
+            assertTrue(e.getMessage(), e.getMessage().endsWith("has cross-node transfers in progress"));
+        }
+
+        // the prepared deposit lands even though the account was closed meanwhile
+        moneyService.commitDeposit(id, BigDecimal.ONE);
+        assertEquals(BigDecimal.ONE, moneyService.getAccount(id).getBalance());
+    }
+}